@@ -0,0 +1,67 @@
+package com.bbj.spring6restmvc.jmh;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.services.BeerServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory service with a catalog of beers, single threaded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeerServiceImplBenchmark {
+
+    @Param({"10000"})
+    int beers;
+
+    BeerServiceImpl beerService;
+    UUID[] ids;
+    int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.quietLogging();
+        beerService = new BeerServiceImpl();
+        List<BeerDTO> saved = beerService.saveNewBeers(BenchmarkData.beers(beers));
+        ids = saved.stream().map(BeerDTO::getId).toArray(UUID[]::new);
+    }
+
+    private UUID nextId() {
+        next = (next + 1) % ids.length;
+        return ids[next];
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> getBeerById() {
+        return beerService.getBeerById(nextId());
+    }
+
+    @Benchmark
+    public BeerPageDTO listBeersFirstPage() {
+        return beerService.listBeers(null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public BeerPageDTO listBeersByStyle() {
+        return beerService.listBeers(BeerFilter.builder().beerStyle(BeerStyle.IPA).build(),
+                null, null, null, null, null);
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> updateBeerById() {
+        UUID id = nextId();
+        return beerService.updateBeerById(id, BenchmarkData.beer(next).toBuilder().id(id).version(null).build());
+    }
+}
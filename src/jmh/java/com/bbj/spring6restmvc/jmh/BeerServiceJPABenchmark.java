@@ -0,0 +1,98 @@
+package com.bbj.spring6restmvc.jmh;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.services.BeerDtoCache;
+import com.bbj.spring6restmvc.services.BeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BeerServiceJPA against the in-memory H2 of the application, through the real Spring beans
+ * (transactions, cache, mapper), without the web layer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeerServiceJPABenchmark {
+
+    @Param({"10000"})
+    int beers;
+
+    ConfigurableApplicationContext context;
+    BeerService beerService;
+    BeerDtoCache beerDtoCache;
+    UUID[] ids;
+    int next;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .web(WebApplicationType.NONE)
+                //args, not properties(): those are defaults, application.properties would win
+                //devtools is on the classpath, but never part of a packaged app: measure without it
+                .run("--spring.devtools.restart.enabled=false",
+                        "--spring.autoconfigure.exclude="
+                                + "org.springframework.boot.devtools.autoconfigure.LocalDevToolsAutoConfiguration,"
+                                + "org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn");
+        beerService = context.getBean(BeerService.class);
+        beerDtoCache = context.getBean(BeerDtoCache.class);
+
+        List<BeerDTO> saved = beerService.saveNewBeers(BenchmarkData.beers(beers));
+        ids = saved.stream().map(BeerDTO::getId).toArray(UUID[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private UUID nextId() {
+        next = (next + 1) % ids.length;
+        return ids[next];
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> getBeerByIdCached() {
+        return beerService.getBeerById(ids[0]);
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> getBeerByIdUncached() {
+        UUID id = nextId();
+        beerDtoCache.evict(id); //no transaction here: evicted right away
+        return beerService.getBeerById(id);
+    }
+
+    @Benchmark
+    public BeerPageDTO listBeersFirstPage() {
+        return beerService.listBeers(null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public BeerPageDTO listBeersByStyle() {
+        return beerService.listBeers(BeerFilter.builder().beerStyle(BeerStyle.IPA).build(),
+                null, null, null, null, null);
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> updateBeerById() {
+        UUID id = nextId();
+        return beerService.updateBeerById(id, BenchmarkData.beer(next).toBuilder().id(id).version(null).build());
+    }
+}
@@ -0,0 +1,55 @@
+package com.bbj.spring6restmvc.jmh;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Same beers for every benchmark, so numbers of different runs compare.
+ */
+final class BenchmarkData {
+
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+
+    private BenchmarkData() {
+    }
+
+    static BeerDTO beer(int i) {
+        LocalDateTime now = LocalDateTime.of(2023, 1, 1, 12, 0).plusSeconds(i);
+        return BeerDTO.builder()
+                .id(new UUID(0, i))
+                .version(1)
+                .beerName("Beer " + i)
+                .beerStyle(STYLES[i % STYLES.length])
+                .upc("0631234" + (200_000 + i))
+                .quantityOnHand(i % 500)
+                .price(new BigDecimal("12.99"))
+                .createdDate(now)
+                .updateDate(now)
+                .build();
+    }
+
+    static List<BeerDTO> beers(int count) {
+        List<BeerDTO> beers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            beers.add(beer(i));
+        }
+        return beers;
+    }
+
+    /**
+     * Without Spring Boot nothing reads application.properties and logback logs
+     * everything at debug: the services would be measured writing to the console.
+     */
+    static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+}
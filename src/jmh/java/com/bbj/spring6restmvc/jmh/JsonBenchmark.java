@@ -0,0 +1,51 @@
+package com.bbj.spring6restmvc.jmh;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of a BeerDTO list, what a listing response costs on top of the query.
+ * toBytes includes growing the output buffer, toStream is the serializer alone
+ * (as when Spring writes straight to the servlet stream).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"1", "100", "10000"})
+    int size;
+
+    ObjectWriter writer;
+    List<BeerDTO> beers;
+
+    @Setup
+    public void setUp() {
+        //same defaults as the ObjectMapper Spring Boot configures (java.time support ...)
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, BeerDTO.class));
+        beers = BenchmarkData.beers(size);
+    }
+
+    @Benchmark
+    public byte[] toBytes() throws IOException {
+        return writer.writeValueAsBytes(beers);
+    }
+
+    @Benchmark
+    public void toStream() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), beers);
+    }
+}
@@ -0,0 +1,69 @@
+package com.bbj.spring6restmvc.jmh;
+
+import com.bbj.spring6restmvc.entities.Beer;
+import com.bbj.spring6restmvc.entities.Customer;
+import com.bbj.spring6restmvc.mappers.BeerMapper;
+import com.bbj.spring6restmvc.mappers.BeerMapperImpl;
+import com.bbj.spring6restmvc.mappers.CustomerMapper;
+import com.bbj.spring6restmvc.mappers.CustomerMapperImpl;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.CustomerDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapStruct conversions done on every request, one entity at a time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+
+    BeerMapper beerMapper = new BeerMapperImpl();
+    CustomerMapper customerMapper = new CustomerMapperImpl();
+
+    BeerDTO beerDto;
+    Beer beer;
+    CustomerDTO customerDto;
+    Customer customer;
+
+    @Setup
+    public void setUp() {
+        beerDto = BenchmarkData.beer(42);
+        beer = beerMapper.beerDtoToBeer(beerDto);
+        customerDto = CustomerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .name("Customer 42")
+                .createdDate(LocalDateTime.now())
+                .updateDate(LocalDateTime.now())
+                .build();
+        customer = customerMapper.customerDtoToCustomer(customerDto);
+    }
+
+    @Benchmark
+    public Beer beerDtoToBeer() {
+        return beerMapper.beerDtoToBeer(beerDto);
+    }
+
+    @Benchmark
+    public BeerDTO beerToBeerDto() {
+        return beerMapper.beerToBeerDto(beer);
+    }
+
+    @Benchmark
+    public Customer customerDtoToCustomer() {
+        return customerMapper.customerDtoToCustomer(customerDto);
+    }
+
+    @Benchmark
+    public CustomerDTO customerToCustomerDto() {
+        return customerMapper.customerToCustomerDto(customer);
+    }
+}
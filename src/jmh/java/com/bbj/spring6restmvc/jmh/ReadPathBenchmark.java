@@ -0,0 +1,101 @@
+package com.bbj.spring6restmvc.jmh;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.mappers.BeerMapper;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.repositories.BeerRepository;
+import com.bbj.spring6restmvc.services.BeerService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Beer reads as managed entities copied by BeerMapper (the former BeerServiceJPA path)
+ * vs straight into DTOs (findBeerDtoById / findDtoSlice), both in a read-only transaction.
+ * Look at gc.alloc.rate.norm: bytes allocated per read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadPathBenchmark {
+
+    @Param({"10000"})
+    int beers;
+
+    @Param({"25"})
+    int pageSize;
+
+    ConfigurableApplicationContext context;
+    BeerRepository beerRepository;
+    BeerMapper beerMapper;
+    TransactionTemplate readOnly;
+    PageRequest firstPage;
+    UUID[] ids;
+    int next;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.devtools.restart.enabled=false",
+                        "--spring.autoconfigure.exclude="
+                                + "org.springframework.boot.devtools.autoconfigure.LocalDevToolsAutoConfiguration,"
+                                + "org.springframework.boot.devtools.autoconfigure.DevToolsDataSourceAutoConfiguration",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn");
+        beerRepository = context.getBean(BeerRepository.class);
+        beerMapper = context.getBean(BeerMapper.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        firstPage = PageRequest.of(0, pageSize, Sort.by("updateDate", "id"));
+
+        List<BeerDTO> saved = context.getBean(BeerService.class).saveNewBeers(BenchmarkData.beers(beers));
+        ids = saved.stream().map(BeerDTO::getId).toArray(UUID[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private UUID nextId() {
+        next = (next + 1) % ids.length;
+        return ids[next];
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> byIdEntity() {
+        UUID id = nextId();
+        return readOnly.execute(status -> beerRepository.findById(id).map(beerMapper::beerToBeerDto));
+    }
+
+    @Benchmark
+    public Optional<BeerDTO> byIdProjection() {
+        UUID id = nextId();
+        return readOnly.execute(status -> beerRepository.findBeerDtoById(id));
+    }
+
+    @Benchmark
+    public List<BeerDTO> pageEntity() {
+        return readOnly.execute(status -> beerRepository.findSlice(null, firstPage)
+                .map(beerMapper::beerToBeerDto).getContent());
+    }
+
+    @Benchmark
+    public List<BeerDTO> pageProjection() {
+        return readOnly.execute(status -> beerRepository.findDtoSlice(null, firstPage).getContent());
+    }
+}
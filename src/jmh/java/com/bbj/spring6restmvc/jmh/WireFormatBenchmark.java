@@ -0,0 +1,72 @@
+package com.bbj.spring6restmvc.jmh;
+
+import com.bbj.spring6restmvc.config.CborConfig;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON against CBOR (CborConfig) for a BeerDTO list: encode and decode time,
+ * and the bytes on the wire, printed once per trial (and checked to decode to the same beers).
+ * Both start from the Spring Boot settings that matter here: dates as ISO text (CBOR turns them
+ * back to arrays) and the parameter names module, the DTOs are created through their constructor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor"})
+    String format;
+
+    @Param({"1", "100"})
+    int size;
+
+    ObjectWriter writer;
+    ObjectReader reader;
+    List<BeerDTO> beers;
+    byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule())
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        ObjectMapper objectMapper = "cbor".equals(format) ? CborConfig.cborObjectMapper(builder) : builder.build();
+
+        CollectionType listType = objectMapper.getTypeFactory().constructCollectionType(List.class, BeerDTO.class);
+        writer = objectMapper.writerFor(listType);
+        reader = objectMapper.readerFor(listType);
+        beers = BenchmarkData.beers(size);
+        encoded = writer.writeValueAsBytes(beers);
+
+        if (!beers.equals(reader.readValue(encoded))) {
+            throw new IllegalStateException(format + " does not round trip");
+        }
+        System.out.printf("%n%s, %d beers: %,d bytes (%,.1f per beer)%n",
+                format, size, encoded.length, encoded.length / (double) size);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(beers);
+    }
+
+    @Benchmark
+    public List<BeerDTO> decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
@@ -7,13 +7,17 @@ import com.bbj.spring6restmvc.repositories.BeerRepository;
 import com.bbj.spring6restmvc.repositories.CustomerRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.UUID;
 
+//the "seed" profile loads a full sized dataset instead, see DataSeeder
+@Profile("!seed")
 @Component
 @RequiredArgsConstructor
 public class BootstrapData implements CommandLineRunner {
@@ -22,7 +26,9 @@ public class BootstrapData implements CommandLineRunner {
     private final BeerRepository beerRepository;
     private final CustomerRepository customerRepository;
 
+    //one read-write transaction: the "is it empty" counts must come from the primary, not a replica
     @Override
+    @Transactional
     public void run(String... args) throws Exception {
         loadBeerData();
         loadCustomerData();
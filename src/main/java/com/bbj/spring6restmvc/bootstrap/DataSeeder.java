@@ -0,0 +1,195 @@
+package com.bbj.spring6restmvc.bootstrap;
+
+import com.bbj.spring6restmvc.entities.TimeOrderedUuidGenerator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Production sized dataset for performance work, replaces BootstrapData when the
+ * "seed" profile is active (see application-seed.properties):
+ * bbj.seed.beers / bbj.seed.customers rows in total, only what is missing is inserted.
+ *
+ * Rows are generated by SyntheticData and written with plain JDBC batches
+ * (no persistence context), one transaction per batch, on bbj.seed.threads threads.
+ * By default it runs in the background once the application is ready,
+ * so the API is up while the tables fill; progress is logged in rows/s.
+ */
+@Slf4j
+@Component
+@Profile("seed")
+public class DataSeeder {
+
+    static final String INSERT_BEER = "insert into beer (id, version, beer_name, beer_style, upc, "
+            + "quantity_on_hand, price, created_date, update_date) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    static final String INSERT_CUSTOMER = "insert into customer (id, version, name, created_date, update_date) "
+            + "values (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long beers;
+    private final long customers;
+    private final int threads;
+    private final int batchSize;
+    private final long randomSeed;
+    private final boolean async;
+    private final ExecutorService workers;
+
+    public DataSeeder(JdbcTemplate jdbcTemplate,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${bbj.seed.beers:1000000}") long beers,
+                      @Value("${bbj.seed.customers:100000}") long customers,
+                      @Value("${bbj.seed.threads:4}") int threads,
+                      @Value("${bbj.seed.batch-size:1000}") int batchSize,
+                      @Value("${bbj.seed.random-seed:42}") long randomSeed,
+                      @Value("${bbj.seed.async:true}") boolean async) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.beers = beers;
+        this.customers = customers;
+        this.threads = Math.max(threads, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        this.randomSeed = randomSeed;
+        this.async = async;
+        this.workers = Executors.newFixedThreadPool(this.threads);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (async) {
+            Thread seeder = new Thread(this::seed, "data-seeder");
+            seeder.setDaemon(true);
+            seeder.start();
+        } else {
+            seed();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+
+    public void seed() {
+        try {
+            seedBeers();
+            seedCustomers();
+        } catch (RuntimeException e) {
+            log.error("Seeding stopped", e);
+            throw e;
+        }
+    }
+
+    public long seedBeers() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        return insert("beer", beers, INSERT_BEER, (statement, random, n) -> {
+            LocalDateTime created = SyntheticData.createdDate(random, now).truncatedTo(ChronoUnit.MICROS);
+            statement.setObject(1, TimeOrderedUuidGenerator.next());
+            statement.setInt(2, 0);
+            statement.setString(3, SyntheticData.beerName(random, n));
+            statement.setInt(4, SyntheticData.beerStyle(random).ordinal());
+            statement.setString(5, SyntheticData.upc(n));
+            statement.setInt(6, SyntheticData.quantityOnHand(random));
+            statement.setBigDecimal(7, SyntheticData.price(random));
+            statement.setObject(8, created);
+            statement.setObject(9, SyntheticData.updateDate(random, created, now));
+        });
+    }
+
+    public long seedCustomers() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        return insert("customer", customers, INSERT_CUSTOMER, (statement, random, n) -> {
+            LocalDateTime created = SyntheticData.createdDate(random, now).truncatedTo(ChronoUnit.MICROS);
+            statement.setObject(1, TimeOrderedUuidGenerator.next());
+            statement.setInt(2, 0);
+            statement.setString(3, SyntheticData.customerName(random));
+            statement.setObject(4, created);
+            statement.setObject(5, SyntheticData.updateDate(random, created, now));
+        });
+    }
+
+    @FunctionalInterface
+    interface RowWriter {
+        void write(PreparedStatement statement, SplittableRandom random, long n) throws SQLException;
+    }
+
+    //rows [existing, target) in batches spread over the workers; returns the number inserted
+    private long insert(String table, long target, String sql, RowWriter rowWriter) {
+        Long existing = jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+        long from = existing == null ? 0 : existing;
+        if (from >= target) {
+            log.info("Seeding {}: {} rows already there, nothing to do", table, from);
+            return 0;
+        }
+        long total = target - from;
+        log.info("Seeding {}: {} rows on {} threads, batches of {}", table, total, threads, batchSize);
+
+        AtomicLong done = new AtomicLong();
+        long reportEvery = Math.max(total / 10, batchSize);
+        long start = System.nanoTime();
+
+        List<Future<?>> batches = new ArrayList<>();
+        for (long batchStart = from; batchStart < target; batchStart += batchSize) {
+            long first = batchStart;
+            int rows = (int) Math.min(batchSize, target - batchStart);
+            batches.add(workers.submit(() -> {
+                //one random per batch: the same rows whatever the thread count
+                SplittableRandom random = new SplittableRandom(randomSeed ^ (table.hashCode() * 31L + first));
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                            @Override
+                            public void setValues(PreparedStatement statement, int i) throws SQLException {
+                                rowWriter.write(statement, random, first + i);
+                            }
+
+                            @Override
+                            public int getBatchSize() {
+                                return rows;
+                            }
+                        }));
+                long now = done.addAndGet(rows);
+                if (now / reportEvery != (now - rows) / reportEvery) {
+                    log.info("Seeding {}: {}/{} rows, {} rows/s", table, now, total, rate(now, start));
+                }
+            }));
+        }
+        for (Future<?> batch : batches) {
+            try {
+                batch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Seeding " + table + " interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Seeding " + table + " failed", e.getCause());
+            }
+        }
+        log.info("Seeded {}: {} rows in {} ms, {} rows/s", table, total,
+                (System.nanoTime() - start) / 1_000_000, rate(total, start));
+        return total;
+    }
+
+    private static long rate(long rows, long startNanos) {
+        return (long) (rows / ((System.nanoTime() - startNanos) / 1e9));
+    }
+}
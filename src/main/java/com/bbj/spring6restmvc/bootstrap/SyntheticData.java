@@ -0,0 +1,114 @@
+package com.bbj.spring6restmvc.bootstrap;
+
+import com.bbj.spring6restmvc.model.BeerStyle;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+
+/**
+ * Plausible looking beers and customers for DataSeeder.
+ * Everything comes from the given random, so the same seed gives the same dataset.
+ *
+ * Distributions, roughly what a real catalog looks like:
+ * - styles are skewed (lots of IPA / lager, few gose), the style index is not uniform
+ * - prices are log-normal around 12, quantities exponential with ~5% out of stock
+ * - created dates spread over 3 years, updated some time after
+ */
+final class SyntheticData {
+
+    //same order as BeerStyle: LAGER, PILSNER, STOUT, GOSE, PORTER, ALE, WHEAT, IPA, PALE_ALE, SAISON
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+    private static final int[] STYLE_WEIGHTS = {20, 8, 6, 1, 4, 10, 5, 25, 18, 3};
+    private static final int[] STYLE_CUMULATIVE = cumulative(STYLE_WEIGHTS);
+
+    private static final String[] ADJECTIVES = {"Galaxy", "Hazy", "Golden", "Dark", "Wild", "Old", "Crooked",
+            "Sunshine", "Midnight", "Rusty", "Lazy", "Hoppy", "Bitter", "Smoky", "Copper", "Little", "Big",
+            "Northern", "Velvet", "Iron"};
+    private static final String[] NOUNS = {"Cat", "City", "Crank", "Monk", "River", "Fox", "Harbor", "Anchor",
+            "Owl", "Mountain", "Lantern", "Bear", "Garden", "Raven", "Bridge", "Wolf", "Orchard", "Comet",
+            "Tide", "Barrel"};
+    private static final String[] FIRST_NAMES = {"James", "Mary", "Robert", "Patricia", "John", "Jennifer",
+            "Michael", "Linda", "David", "Elizabeth", "Wei", "Fatima", "Carlos", "Ana", "Yuki", "Olga", "Ahmed",
+            "Priya", "Lucas", "Emma"};
+    private static final String[] LAST_NAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia",
+            "Miller", "Davis", "Martin", "Dubois", "Muller", "Rossi", "Kowalski", "Tanaka", "Silva", "Nguyen",
+            "Kim", "Singh", "Cohen", "Ivanova"};
+
+    private static final long THREE_YEARS_SECONDS = 3L * 365 * 24 * 3600;
+
+    private SyntheticData() {
+    }
+
+    static BeerStyle beerStyle(SplittableRandom random) {
+        int draw = random.nextInt(STYLE_CUMULATIVE[STYLE_CUMULATIVE.length - 1]);
+        for (int i = 0; i < STYLE_CUMULATIVE.length; i++) {
+            if (draw < STYLE_CUMULATIVE[i]) {
+                return STYLES[i];
+            }
+        }
+        return STYLES[STYLES.length - 1];
+    }
+
+    //"Hazy Owl 1234": the number keeps names of millions of beers distinct enough
+    static String beerName(SplittableRandom random, long n) {
+        return ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)] + " " + n;
+    }
+
+    //UPC-A: 11 digits (unique per n) + check digit
+    static String upc(long n) {
+        String digits = Long.toString(10_000_000_000L + n % 90_000_000_000L); //always 11 digits
+        int sum = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int digit = digits.charAt(i) - '0';
+            sum += i % 2 == 0 ? digit * 3 : digit;
+        }
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    static BigDecimal price(SplittableRandom random) {
+        double price = Math.exp(Math.log(12) + 0.35 * gaussian(random));
+        return BigDecimal.valueOf(Math.min(Math.max(price, 2.99), 79.99)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    static int quantityOnHand(SplittableRandom random) {
+        if (random.nextInt(100) < 5) {
+            return 0;
+        }
+        return 1 + (int) (-150 * Math.log(1 - random.nextDouble()));
+    }
+
+    static LocalDateTime createdDate(SplittableRandom random, LocalDateTime now) {
+        return now.minusSeconds(random.nextLong(THREE_YEARS_SECONDS));
+    }
+
+    static LocalDateTime updateDate(SplittableRandom random, LocalDateTime created, LocalDateTime now) {
+        long sinceCreated = Duration.between(created, now).getSeconds();
+        //a third never updated since created
+        return random.nextInt(3) == 0 ? created : created.plusSeconds(random.nextLong(sinceCreated + 1));
+    }
+
+    static String customerName(SplittableRandom random) {
+        return FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        //Box-Muller, SplittableRandom has no nextGaussian() on 17
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static int[] cumulative(int[] weights) {
+        if (weights.length != STYLES.length) {
+            throw new IllegalStateException("One weight per BeerStyle expected");
+        }
+        int[] cumulative = new int[weights.length];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+}
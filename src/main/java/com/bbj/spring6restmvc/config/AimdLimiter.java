@@ -0,0 +1,98 @@
+package com.bbj.spring6restmvc.config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limit, AIMD (additive increase, multiplicative decrease) like TCP congestion control.
+ * The limit moves once per window (at least window long, at least MIN_WINDOW_SAMPLES requests), on what
+ * the requests released in it saw:
+ * - their p90 above latencyThreshold (over 10% of them slower, or failed): the backend is saturated,
+ *   limit * backoffRatio, whatever the number of slow ones
+ * - otherwise: limit + 1 for every fast request that had at least half the limit in use
+ * One slow endpoint (or a few slow answers) can not walk the limit down on its own, at light load it stays put.
+ * The limit stays in [minLimit, maxLimit]. Requests over the limit are refused right away,
+ * so the ones admitted keep close to the unloaded latency instead of all queueing.
+ */
+public class AimdLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    //the current window, guarded by this
+    private long windowStart = System.nanoTime();
+    private int samples;
+    private int slowSamples;
+    private int growth;
+
+    static final int MIN_WINDOW_SAMPLES = 10;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, double backoffRatio,
+                       Duration window) {
+        if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Expected 1 <= minLimit <= maxLimit and 0 < backoffRatio < 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.windowNanos = window.toNanos();
+        this.limit = Math.min(Math.max(initialLimit, minLimit), maxLimit);
+    }
+
+    //true: go ahead, and call release() when done; false: over the limit, reject
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos, boolean failed) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        adjust(latencyNanos, failed, inFlightBefore);
+    }
+
+    private synchronized void adjust(long latencyNanos, boolean failed, int inFlightBefore) {
+        samples++;
+        if (failed || latencyNanos > latencyThresholdNanos) {
+            slowSamples++;
+        } else if (inFlightBefore * 2 >= limit) {
+            //only grow when the limit is actually what is holding requests back
+            growth++;
+        }
+
+        long now = System.nanoTime();
+        if (samples < MIN_WINDOW_SAMPLES || now - windowStart < windowNanos) {
+            return;
+        }
+        if (slowSamples * 10 > samples) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else {
+            limit = Math.min(maxLimit, limit + growth);
+        }
+        windowStart = now;
+        samples = 0;
+        slowSamples = 0;
+        growth = 0;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,36 @@
+package com.bbj.spring6restmvc.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * CBOR (application/cbor, RFC 8949) bodies on every endpoint, next to JSON:
+ * a client sending Accept: application/cbor gets CBOR back, and request bodies are read
+ * as CBOR when sent with Content-Type: application/cbor. JSON stays the default.
+ * A CBOR body has its own ETag and the responses carry Vary: Accept (see ETags), so neither a
+ * conditional GET nor a shared cache hands one representation for the other.
+ *
+ * Same Jackson setup as the JSON ObjectMapper (spring.jackson.*, modules),
+ * but binary where it pays off: UUIDs go out as 16 bytes, BigDecimal as a CBOR decimal fraction,
+ * dates as [year, month, day, ...] arrays instead of ISO text to parse.
+ */
+@Configuration
+public class CborConfig {
+
+    //replaces the CBOR converter Spring MVC adds on its own, which ignores the Boot Jackson settings
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborObjectMapper(builder));
+    }
+
+    public static ObjectMapper cborObjectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new CBORFactory())
+                .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.bbj.spring6restmvc.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Load shedding for /api/**: reads (GET, HEAD) and writes (the other methods) each get
+ * their own AimdLimiter, so a burst of slow writes does not take the reads down with it.
+ * A request over its limit is answered 503 with Retry-After straight away,
+ * before any thread or db connection is spent on it.
+ *
+ * The limits follow the latency of the requests let in (and 5xx answers),
+ * see application.properties for the bbj.limiter.* settings.
+ *
+ * An async request (the streaming export, the server-sent events) holds its slot only until its first
+ * dispatch returns: the stream itself is not counted in flight, nor is its length taken as latency.
+ * The events have their own cap (bbj.sse.max-subscribers).
+ * Gauges bbj.limiter.limit / bbj.limiter.in-flight and counter bbj.limiter.rejected, tagged group=read|write.
+ */
+@Component
+@ConditionalOnProperty(name = "bbj.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    static final String API_PATH = "/api/";
+
+    private final AimdLimiter readLimiter;
+    private final AimdLimiter writeLimiter;
+    private final String retryAfterSeconds;
+    private final Map<AimdLimiter, Counter> rejected;
+
+    public ConcurrencyLimitFilter(@Value("${bbj.limiter.read.initial-limit:100}") int readInitialLimit,
+                                  @Value("${bbj.limiter.read.max-limit:400}") int readMaxLimit,
+                                  @Value("${bbj.limiter.read.latency-threshold:500ms}") Duration readLatencyThreshold,
+                                  @Value("${bbj.limiter.write.initial-limit:50}") int writeInitialLimit,
+                                  @Value("${bbj.limiter.write.max-limit:200}") int writeMaxLimit,
+                                  @Value("${bbj.limiter.write.latency-threshold:1s}") Duration writeLatencyThreshold,
+                                  @Value("${bbj.limiter.min-limit:4}") int minLimit,
+                                  @Value("${bbj.limiter.backoff-ratio:0.9}") double backoffRatio,
+                                  @Value("${bbj.limiter.window:1s}") Duration window,
+                                  @Value("${bbj.limiter.retry-after:1s}") Duration retryAfter,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        this.readLimiter = new AimdLimiter(readInitialLimit, minLimit, readMaxLimit, readLatencyThreshold, backoffRatio,
+                window);
+        this.writeLimiter = new AimdLimiter(writeInitialLimit, minLimit, writeMaxLimit, writeLatencyThreshold, backoffRatio,
+                window);
+        //Retry-After is in whole seconds
+        this.retryAfterSeconds = String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        this.rejected = registry == null
+                ? Map.of()
+                : Map.of(readLimiter, register(registry, "read", readLimiter),
+                         writeLimiter, register(registry, "write", writeLimiter));
+    }
+
+    private static Counter register(MeterRegistry registry, String group, AimdLimiter limiter) {
+        Gauge.builder("bbj.limiter.limit", limiter, AimdLimiter::getLimit).tag("group", group).register(registry);
+        Gauge.builder("bbj.limiter.in-flight", limiter, AimdLimiter::getInFlight).tag("group", group).register(registry);
+        return Counter.builder("bbj.limiter.rejected").tag("group", group).register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(API_PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        AimdLimiter limiter = isRead(request) ? readLimiter : writeLimiter;
+        if (!limiter.tryAcquire()) {
+            Counter counter = rejected.get(limiter);
+            if (counter != null) {
+                counter.increment();
+            }
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method);
+    }
+}
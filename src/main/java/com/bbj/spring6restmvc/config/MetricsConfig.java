@@ -0,0 +1,23 @@
+package com.bbj.spring6restmvc.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Timer per service method: the services are annotated @Timed("bbj.service"),
+ * TimedAspect records each call tagged with class, method and exception.
+ * Boot exposes the timers, http.server.requests, hibernate.* and hikaricp.*
+ * on /actuator/prometheus (see application.properties).
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_TIMER = "bbj.service";
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
@@ -0,0 +1,69 @@
+package com.bbj.spring6restmvc.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas, on when bbj.datasource.replica-urls lists at least one JDBC url:
+ * readOnly transactions (BeerServiceJPA / CustomerServiceJPA reads, see the repositories)
+ * go to the replicas, everything else to spring.datasource (the primary).
+ * GET /api/v1/beer/{beerId} and its conditional GETs stay on the primary: they fill BeerDtoCache.
+ * Replicas log in with the primary's username / password.
+ * bbj.datasource.replica-lag: how long after a write reads stay on the primary, see ReadWriteRoutingDataSource.
+ *
+ * Replaces Boot's DataSource: spring.datasource.url / username / password still configure the primary,
+ * spring.datasource.hikari.* does not apply to these pools.
+ * With open-in-view, a request keeps the connection its first transaction got, reads after
+ * a write in the same request stay on the primary.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnExpression("!'${bbj.datasource.replica-urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    //closed with the context (inferred close())
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+            DataSourceProperties properties,
+            @Value("${bbj.datasource.replica-urls}") List<String> replicaUrls,
+            @Value("${bbj.datasource.replica-lag:1s}") Duration replicaLag) {
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(properties.determineUsername())
+                    .password(properties.determinePassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        log.info("Reads on {} replica(s), primary for {} after a write", replicas.size(), replicaLag);
+        return new ReadWriteRoutingDataSource(primary, replicas, replicaLag);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource readWriteRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readWriteRoutingDataSource);
+    }
+}
@@ -0,0 +1,97 @@
+package com.bbj.spring6restmvc.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connections of read-only transactions come from the replicas (round robin),
+ * all the others (read-write transactions, no transaction at all) from the primary.
+ *
+ * Replicas lag behind the primary: for replicaLag after a read-write transaction ended,
+ * read-only transactions stay on the primary too, so a client reading right after its
+ * write sees it. Zero sends read-only transactions to the replicas no matter what.
+ * Read-write transactions named UNTRACKED_WRITE (ChangeSequencer, every second) do not start
+ * that window: nobody reads what they write right after, and they would keep reads off the replicas.
+ *
+ * The decision uses the transaction's read-only flag, which is only known once the transaction
+ * has begun: use it behind a LazyConnectionDataSourceProxy, so the connection is only taken
+ * at the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    static final String PRIMARY = "primary";
+
+    //TransactionTemplate.setName() of the background writes that do not start the replica-lag window
+    public static final String UNTRACKED_WRITE = "untracked-write";
+
+    private final List<DataSource> targets = new ArrayList<>();
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final long replicaLagNanos;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private volatile long lastWriteNanos;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration replicaLag) {
+        Map<Object, Object> dataSources = new HashMap<>();
+        dataSources.put(PRIMARY, primary);
+        targets.add(primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            String key = "replica-" + i;
+            dataSources.put(key, replicas.get(i));
+            replicaKeys.add(key);
+            targets.add(replicas.get(i));
+        }
+        setTargetDataSources(dataSources);
+        setDefaultTargetDataSource(primary);
+        replicaLagNanos = replicaLag.toNanos();
+        //nothing written yet: replicas can serve reads from the start
+        lastWriteNanos = System.nanoTime() - replicaLagNanos;
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()
+                    && !UNTRACKED_WRITE.equals(TransactionSynchronizationManager.getCurrentTransactionName())) {
+                onWrite();
+            }
+            return PRIMARY;
+        }
+        if (replicaKeys.isEmpty() || System.nanoTime() - lastWriteNanos < replicaLagNanos) {
+            return PRIMARY;
+        }
+        return replicaKeys.get(Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.size()));
+    }
+
+    //the lag window starts when the write is committed, not when its transaction began
+    private void onWrite() {
+        lastWriteNanos = System.nanoTime();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lastWriteNanos = System.nanoTime();
+                }
+            });
+        }
+    }
+
+    //closes the connection pools, the routing data source is the only one holding them
+    @Override
+    public void close() throws Exception {
+        for (DataSource target : targets) {
+            if (target instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
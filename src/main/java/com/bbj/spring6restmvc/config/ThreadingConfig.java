@@ -0,0 +1,84 @@
+package com.bbj.spring6restmvc.config;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * bbj.threads.mode=virtual (default): Tomcat runs every request on its own virtual thread,
+ * and so do the blocking JPA calls the controllers make through the services.
+ * A request waiting on the db then parks its virtual thread instead of holding one of the
+ * server.tomcat.threads.max platform threads.
+ * MVC async work (StreamingResponseBody of the export) goes to virtual threads as well.
+ *
+ * bbj.threads.mode=platform, or a JVM without virtual threads: Tomcat's usual thread pool.
+ *
+ * The executor is not a bean: an Executor bean would turn off Boot's applicationTaskExecutor
+ * (@Async, @EnableScheduling users and the like), which only applies when there is none.
+ *
+ * With virtual threads the db connection pool becomes the limit,
+ * size spring.datasource.hikari.maximum-pool-size for the concurrency expected.
+ */
+@Slf4j
+@Configuration
+@Conditional(ThreadingConfig.VirtualThreadsCondition.class)
+public class ThreadingConfig {
+
+    public static final String THREAD_MODE_PROPERTY = "bbj.threads.mode";
+
+    private final ExecutorService virtualThreadExecutor;
+
+    public ThreadingConfig() {
+        log.info("Serving requests on virtual threads");
+        this.virtualThreadExecutor = VirtualThreads.newPerTaskExecutor().orElseThrow();
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    @Bean
+    public WebMvcConfigurer virtualThreadAsyncSupport() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(new TaskExecutorAdapter(virtualThreadExecutor));
+            }
+        };
+    }
+
+    //Tomcat does not shut down an executor it was given
+    @PreDestroy
+    void shutdown() {
+        virtualThreadExecutor.shutdown();
+    }
+
+    static class VirtualThreadsCondition implements Condition {
+
+        @Override
+        public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            String mode = context.getEnvironment().getProperty(THREAD_MODE_PROPERTY, "virtual");
+            if (!"virtual".equalsIgnoreCase(mode)) {
+                return false;
+            }
+            if (!VirtualThreads.isSupported()) {
+                log.info("{}=virtual but this JVM ({}) has no virtual threads, serving requests on platform threads",
+                        THREAD_MODE_PROPERTY, Runtime.version().feature());
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.bbj.spring6restmvc.config;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads without requiring the JDK that has them: the project is built for 17,
+ * Executors.newVirtualThreadPerTaskExecutor() is looked up at runtime.
+ * Absent before 19, and throws on 19/20 unless --enable-preview: both count as not supported.
+ */
+public final class VirtualThreads {
+
+    private static final Optional<Method> FACTORY = lookup();
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return FACTORY.isPresent();
+    }
+
+    /**
+     * One new virtual thread per task, empty when the running JVM cannot do it.
+     */
+    public static Optional<ExecutorService> newPerTaskExecutor() {
+        return FACTORY.map(factory -> {
+            try {
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create a virtual thread executor", e);
+            }
+        });
+    }
+
+    private static Optional<Method> lookup() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            //preview API on 19/20: present, but unusable without --enable-preview
+            ((ExecutorService) factory.invoke(null)).shutdown();
+            return Optional.of(factory);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.bbj.spring6restmvc.controller;
+
+import com.bbj.spring6restmvc.config.VirtualThreads;
+import com.bbj.spring6restmvc.controller.EventBuffer.Event;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import com.bbj.spring6restmvc.services.BeerService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes the beer change feed (BeerService.getChanges()) to the subscribers of GET /api/v1/beer/events.
+ * Every change reaches the feed, whichever path or instance wrote it, so reading it is all there is to do:
+ * one thread reads the new changes every bbj.sse.poll-interval and hands them to every subscriber.
+ * With no subscriber it does not read at all, the first one to come reads the latest cursor again.
+ * A resuming subscriber catches up from the feed outside the lock poll() holds, up to the latest cursor
+ * it read, and is then registered under it; what a poll hands it again is dropped by its EventBuffer.
+ *
+ * - no thread per connection: an idle subscriber is an async request and an empty EventBuffer.
+ *   Writes run on a sender thread (a virtual thread each when the JVM has them, else a pool of
+ *   bbj.sse.send-threads), one at a time per subscriber, while further events wait in its buffer
+ * - each event is rendered once for all subscribers, and all events waiting for a subscriber
+ *   go out as one write
+ * - repeated changes of a beer a subscriber has not been sent yet are coalesced (EventBuffer)
+ * - a subscriber with more than bbj.sse.buffer-size beers waiting is dropped: its stream ends,
+ *   EventSource reconnects with Last-Event-ID and catches up from the feed
+ * - a resume further behind than buffer-size gets a "resync" event instead and should read
+ *   GET /api/v1/beer/changes from its cursor before subscribing again. So does a resume ahead of
+ *   the feed (the db was reset, or another one): its resync says 0, everything is to be read again
+ *
+ * Events: "created" / "updated" with the beer, "deleted" with its id; the id field is the feed cursor.
+ * On platform threads, a subscriber that stopped reading holds its sender thread until the write times out.
+ * Gauge bbj.sse.subscribers, counter bbj.sse.dropped.
+ */
+@Slf4j
+@Component
+public class BeerChangeBroadcaster {
+
+    static final int PAGE_SIZE = 1000;
+    //what SseEmitter sends its text with, the stream itself is text/event-stream
+    static final MediaType TEXT_PLAIN_UTF8 = new MediaType("text", "plain", StandardCharsets.UTF_8);
+    static final String HEARTBEAT = ":\n\n";
+
+    private final BeerService beerService;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+    private final ScheduledExecutorService poller;
+    private final ExecutorService senders;
+    //poll() and registering a subscriber. A ReentrantLock: poll() reads the db with it
+    private final Lock lock = new ReentrantLock();
+    //feed cursor of the last change handed out, null while nobody subscribes (guarded by lock)
+    private Long cursor;
+
+    public BeerChangeBroadcaster(BeerService beerService,
+                                 ObjectMapper objectMapper,
+                                 @Value("${bbj.sse.poll-interval:200ms}") Duration pollInterval,
+                                 @Value("${bbj.sse.heartbeat:15s}") Duration heartbeat,
+                                 @Value("${bbj.sse.buffer-size:1000}") int bufferSize,
+                                 @Value("${bbj.sse.max-subscribers:10000}") int maxSubscribers,
+                                 @Value("${bbj.sse.timeout:30m}") Duration timeout,
+                                 @Value("${bbj.sse.send-threads:32}") int sendThreads,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        this.beerService = beerService;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeout.toMillis();
+
+        this.senders = VirtualThreads.newPerTaskExecutor()
+                .orElseGet(() -> Executors.newFixedThreadPool(Math.max(sendThreads, 1), daemon("beer-event-sender")));
+        this.poller = Executors.newSingleThreadScheduledExecutor(daemon("beer-event-poller"));
+        poller.scheduleWithFixedDelay(this::pollQuietly,
+                pollInterval.toNanos(), pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+        poller.scheduleWithFixedDelay(() -> subscribers.forEach(Subscriber::heartbeat),
+                heartbeat.toNanos(), heartbeat.toNanos(), TimeUnit.NANOSECONDS);
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            Gauge.builder("bbj.sse.subscribers", subscribers, Set::size).register(registry);
+            FunctionCounter.builder("bbj.sse.dropped", dropped, LongAdder::sum).register(registry);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * A new stream of the changes after since (null: from now on), empty when
+     * bbj.sse.max-subscribers are already connected.
+     */
+    public Optional<ResponseBodyEmitter> subscribe(Long since) {
+        if (subscribers.size() >= maxSubscribers) {
+            return Optional.empty();
+        }
+        EventStream emitter = new EventStream(timeoutMillis);
+        long latest = beerService.getLatestChangeCursor();
+        long start = since == null ? latest : since;
+        Subscriber subscriber = new Subscriber(emitter, new EventBuffer(bufferSize, start));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        if (since != null && since > latest) {
+            //events up to since would be taken as already sent: none would go out for a long while
+            subscriber.close("event:resync\ndata:0\n\n");
+            return Optional.of(emitter);
+        }
+        long until = latest;
+        while (true) {
+            if (subscriber.cursor() < until && !catchUp(subscriber, subscriber.cursor(), until)) {
+                subscriber.close("event:resync\ndata:" + start + "\n\n");
+                return Optional.of(emitter);
+            }
+            lock.lock();
+            try {
+                if (cursor == null) {
+                    cursor = subscriber.cursor();
+                }
+                //a poll went past what was read: read the rest first, else it would be missed
+                if (cursor <= subscriber.cursor()) {
+                    subscribers.add(subscriber);
+                    break;
+                }
+                until = cursor;
+            } finally {
+                lock.unlock();
+            }
+        }
+        //the caught up events, or a heartbeat: either way the headers go out and the client sees it's open
+        subscriber.heartbeat();
+        return Optional.of(emitter);
+    }
+
+    //false: more changes than a buffer holds
+    private boolean catchUp(Subscriber subscriber, long since, long until) {
+        long from = since;
+        while (from < until) {
+            ChangesDTO<BeerDTO> page = beerService.getChanges(from, PAGE_SIZE);
+            if (!subscriber.offer(events(page), page.getCursor())) {
+                return false;
+            }
+            if (!page.isHasMore()) {
+                break;
+            }
+            from = page.getCursor();
+        }
+        return true;
+    }
+
+    /**
+     * Hands the changes since the last poll to every subscriber, page by page.
+     * Nothing is read while nobody subscribes.
+     */
+    public void poll() {
+        lock.lock();
+        try {
+            pollLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void pollLocked() {
+        if (subscribers.isEmpty()) {
+            cursor = null;
+            return;
+        }
+        long from = currentCursor();
+        ChangesDTO<BeerDTO> page;
+        do {
+            page = beerService.getChanges(from, PAGE_SIZE);
+            if (page.getCursor() > from) {
+                List<Event> events = events(page);
+                for (Subscriber subscriber : subscribers) {
+                    if (subscriber.offer(events, page.getCursor())) {
+                        subscriber.schedule();
+                    } else {
+                        drop(subscriber);
+                    }
+                }
+            }
+            from = page.getCursor();
+        } while (page.isHasMore());
+        cursor = from;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.error("Beer change poll failed, retried at the next one", e);
+        }
+    }
+
+    private long currentCursor() {
+        if (cursor == null) {
+            cursor = beerService.getLatestChangeCursor();
+        }
+        return cursor;
+    }
+
+    private void drop(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        dropped.increment();
+        subscriber.close(null);
+    }
+
+    //rendered once, written as is to every subscriber
+    private List<Event> events(ChangesDTO<BeerDTO> page) {
+        List<Event> events = new ArrayList<>(page.getChanged().size() + page.getDeleted().size());
+        for (BeerDTO beer : page.getChanged()) {
+            String name = Integer.valueOf(0).equals(beer.getVersion()) ? "created" : "updated";
+            events.add(new Event(beer.getId(), frame(name, beer)));
+        }
+        for (UUID id : page.getDeleted()) {
+            events.add(new Event(id, frame("deleted", Map.of("id", id))));
+        }
+        return events;
+    }
+
+    private String frame(String name, Object data) {
+        try {
+            //single line JSON: one data field
+            return "event:" + name + "\ndata:" + objectMapper.writeValueAsString(data) + "\n\n";
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot write event " + name, e);
+        }
+    }
+
+    //before the web server stops, while the streams can still end properly
+    @EventListener(ContextClosedEvent.class)
+    public void closeSubscribers() {
+        poller.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.close(null));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        senders.shutdown();
+    }
+
+    /**
+     * ResponseBodyEmitter writing text/event-stream chunks as they are given, where SseEmitter
+     * would write (and flush) every event and field on its own.
+     */
+    static final class EventStream extends ResponseBodyEmitter {
+
+        EventStream(long timeoutMillis) {
+            super(timeoutMillis);
+        }
+
+        @Override
+        protected void extendResponse(ServerHttpResponse outputMessage) {
+            super.extendResponse(outputMessage);
+            HttpHeaders headers = outputMessage.getHeaders();
+            if (headers.getContentType() == null) {
+                headers.setContentType(MediaType.TEXT_EVENT_STREAM);
+            }
+        }
+    }
+
+    private final class Subscriber {
+        final EventStream emitter;
+        //the fields below are guarded by this
+        final EventBuffer buffer;
+        boolean sending;
+        boolean heartbeat;
+        boolean closed;
+        String lastFrame;
+
+        Subscriber(EventStream emitter, EventBuffer buffer) {
+            this.emitter = emitter;
+            this.buffer = buffer;
+        }
+
+        synchronized long cursor() {
+            return buffer.getCursor();
+        }
+
+        //a closed subscriber accepts everything, it is on its way out
+        synchronized boolean offer(List<Event> events, long pageCursor) {
+            return closed || buffer.offer(events, pageCursor);
+        }
+
+        void heartbeat() {
+            synchronized (this) {
+                heartbeat = true;
+            }
+            schedule();
+        }
+
+        //the stream ends once the write in progress (if any) returns, with lastFrame when given
+        void close(String lastFrame) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                this.lastFrame = lastFrame;
+            }
+            schedule();
+        }
+
+        //starts a sender unless one is at work for this subscriber already, or there is nothing to do
+        void schedule() {
+            synchronized (this) {
+                if (sending || (!closed && buffer.isEmpty() && !heartbeat)) {
+                    return;
+                }
+                sending = true;
+            }
+            senders.execute(this::send);
+        }
+
+        private void send() {
+            while (true) {
+                String text;
+                boolean last;
+                synchronized (this) {
+                    last = closed;
+                    text = closed ? lastFrame : buffer.take();
+                    if (text == null && heartbeat && !closed) {
+                        text = HEARTBEAT;
+                    }
+                    heartbeat = false;
+                    if (text == null && !closed) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    if (text != null) {
+                        emitter.send(text, TEXT_PLAIN_UTF8);
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    //gone: the container reports it, which completes the emitter
+                    subscribers.remove(this);
+                    return;
+                }
+                if (last) {
+                    emitter.complete();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,33 @@
 package com.bbj.spring6restmvc.controller;
 
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerCursor;
 import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerNameMatch;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerSortField;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
 import com.bbj.spring6restmvc.services.BeerService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,16 +58,75 @@ public class BeerController {
 
     public static final String BEER_PATH = "/api/v1/beer";
     public static final String BEER_PATH_ID = BEER_PATH + "/{beerId}";
+    public static final String BEER_PATH_EXPORT = BEER_PATH + "/export";
+    public static final String BEER_PATH_BATCH = BEER_PATH + "/batch";
+    public static final String BEER_PATH_CHANGES = BEER_PATH + "/changes";
+    public static final String BEER_PATH_STOCK = BEER_PATH + "/stock";
+    public static final String BEER_PATH_ID_STOCK = BEER_PATH_ID + "/stock";
 
     private final BeerService beerService;
+    private final ObjectMapper objectMapper;
 
+    /**
+     * Bulk replace: every beer of the array carries its id (and optionally its version, checked
+     * as for a single PUT). Sent as JDBC batches in chunked transactions, see BeerService.updateBeers().
+     * 200 with one result per beer, in input order, status as the single-item PUT would answer.
+     */
+    @PutMapping(BEER_PATH_BATCH)
+    public ResponseEntity<List<BatchItemResultDTO>> handleBatchPut(@RequestBody List<BeerDTO> beers) {
+        return ResponseEntity.ok(beerService.updateBeers(beers));
+    }
+
+    /**
+     * Bulk delete: an array of ids in the body, deleted in chunked transactions.
+     * 200 with one result per id, in input order: 204 deleted, 404 no such beer.
+     */
+    @DeleteMapping(BEER_PATH_BATCH)
+    public ResponseEntity<List<BatchItemResultDTO>> handleBatchDelete(@RequestBody List<UUID> beerIds) {
+        return ResponseEntity.ok(beerService.deleteBeers(beerIds));
+    }
+
+    /**
+     * Stock moves by delta (< 0 for an order), in one guarded UPDATE: no version needed,
+     * so concurrent orders of a hot beer do not fail each other the way PUT / PATCH would.
+     * 204 done, 404 no such beer, 409 not enough stock (nothing taken), 400 no delta.
+     */
+    @PostMapping(BEER_PATH_ID_STOCK)
+    public ResponseEntity<Object> adjustStock(@PathVariable("beerId") UUID beerId,
+                                              @RequestBody StockAdjustmentDTO adjustment) {
+        adjustment.setBeerId(beerId);
+        BatchItemResultDTO result = beerService.adjustStock(List.of(adjustment)).get(0);
+        if (result.getStatus() == HttpStatus.NOT_FOUND.value()) {
+            throw new NotFoundException();
+        }
+        return new ResponseEntity<>(HttpStatusCode.valueOf(result.getStatus()));
+    }
+
+    /**
+     * Several beers at once (the lines of an order), each applied or not on its own.
+     * 200 with one result per adjustment, in input order, status as the single-beer POST would answer.
+     */
+    @PostMapping(BEER_PATH_STOCK)
+    public ResponseEntity<List<BatchItemResultDTO>> adjustStocks(@RequestBody List<StockAdjustmentDTO> adjustments) {
+        return ResponseEntity.ok(beerService.adjustStock(adjustments));
+    }
+
+    /**
+     * PUT and PATCH are conditional when the client sends If-Match (an ETag of a GET)
+     * or a version in the body, If-Match wins. The version is checked by the UPDATE
+     * itself, a stale one is answered with 412 (see ExceptionController).
+     */
     @PatchMapping(BEER_PATH_ID)
     //@ResponseBody - not needed because we have @RestController
     public ResponseEntity<Object> patchBeerById(
             @PathVariable("beerId") UUID beerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody BeerDTO beer) {
 
-        beerService.patchBeerById(beerId, beer);
+        applyIfMatch(ifMatch, beerId, beer);
+        if (!beerService.patchBeerById(beerId, beer)) {
+            throw new NotFoundException();
+        }
 
         return new ResponseEntity<>(HttpStatus.NO_CONTENT); //update ok, no content returned
     }
@@ -56,7 +134,9 @@ public class BeerController {
     @DeleteMapping(BEER_PATH_ID)
     public ResponseEntity<Object> deleteById(@PathVariable("beerId") UUID beerId) {
 
-        beerService.deleteById(beerId);
+        if (!beerService.deleteById(beerId)) {
+            throw new NotFoundException();
+        }
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
@@ -67,6 +147,7 @@ public class BeerController {
     @PutMapping(BEER_PATH_ID)
     public ResponseEntity<Object> updateById(
             @PathVariable("beerId") UUID beerId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody BeerDTO beer) {
 
         /*
@@ -74,10 +155,22 @@ public class BeerController {
             return new ResponseEntity(HttpStatus.NO_CONTENT); //update ok, no content returned
         */
 
-        if (beerService.updateBeerById(beerId, beer).isEmpty()) {
-            throw new NotFoundException();
+        applyIfMatch(ifMatch, beerId, beer);
+        BeerDTO updatedBeer = beerService.updateBeerById(beerId, beer).orElseThrow(NotFoundException::new);
+
+        HttpHeaders headers = new HttpHeaders();
+        if (updatedBeer.getVersion() != null) {
+            //lets the client chain another conditional update without a GET
+            headers.setETag(ETags.of(beerId, updatedBeer.getVersion()));
+        }
+        return new ResponseEntity<>(headers, HttpStatus.NO_CONTENT); //update ok, no content returned
+    }
+
+    private static void applyIfMatch(String ifMatch, UUID beerId, BeerDTO beer) {
+        Integer expectedVersion = ETags.expectedVersion(ifMatch, beerId);
+        if (expectedVersion != null) {
+            beer.setVersion(expectedVersion);
         }
-        return new ResponseEntity<>(HttpStatus.NO_CONTENT); //update ok, no content returned
     }
 
     //@RequestMapping(method = RequestMethod.POST) is equivalent to @PostMapping
@@ -95,12 +188,99 @@ public class BeerController {
                 HttpStatus.CREATED); //201 status: resource created (saved in DB)
     }
 
+    /**
+     * Bulk import: the whole array is saved in one transaction using JDBC batching,
+     * instead of one HTTP call and one INSERT round trip per beer.
+     * Answers the id and Location of every created beer, in input order.
+     */
+    @PostMapping(BEER_PATH_BATCH)
+    public ResponseEntity<List<BatchItemResultDTO>> handleBatchPost(@RequestBody List<BeerDTO> beers) {
+
+        List<BatchItemResultDTO> results = beerService.saveNewBeers(beers).stream()
+                .map(savedBeer -> BatchItemResultDTO.builder()
+                        .id(savedBeer.getId())
+                        .status(HttpStatus.CREATED.value())
+                        .location(BEER_PATH + "/" + savedBeer.getId().toString())
+                        .build())
+                .toList();
+
+        return new ResponseEntity<>(results, HttpStatus.CREATED);
+    }
+
+    /**
+     * Always paged, never the whole table.
+     * - no params / cursor: keyset paging in (updateDate, id) order,
+     *   follow nextCursor from one page to the next
+     * - sortBy (+ pageNumber): classic offset paging on the chosen column
+     * beerName (prefix, or anywhere with nameMatch=CONTAINS), beerStyle and upc filter
+     * the beers first, they combine with both kinds of paging.
+     * Bad cursor / sortBy / direction values are rejected with a 400 by Spring conversion.
+     */
     //if method not specified => will answer all methods (PUT, POST ....)
     @GetMapping(value = BEER_PATH)
-    public List<BeerDTO> listBeers() {
-        //beerService.listBeers() does a new ArrayList<>(beerMap.values())
-        //where beerMap.values() returns a Collection<V> where V = String
-        return beerService.listBeers();
+    public ResponseEntity<BeerPageDTO> listBeers(@RequestParam(required = false) String beerName,
+                                                 @RequestParam(required = false) BeerNameMatch nameMatch,
+                                                 @RequestParam(required = false) BeerStyle beerStyle,
+                                                 @RequestParam(required = false) String upc,
+                                                 @RequestParam(required = false) BeerCursor cursor,
+                                                 @RequestParam(required = false) Integer pageNumber,
+                                                 @RequestParam(required = false) Integer pageSize,
+                                                 @RequestParam(required = false) BeerSortField sortBy,
+                                                 @RequestParam(required = false) Sort.Direction direction,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        BeerFilter filter = BeerFilter.builder()
+                .beerName(beerName)
+                .nameMatch(nameMatch)
+                .beerStyle(beerStyle)
+                .upc(upc)
+                .build();
+        BeerPageDTO page = beerService.listBeers(filter, cursor, pageNumber, pageSize, sortBy, direction);
+
+        //Spring answers 304 on its own when If-None-Match matches, without writing the body
+        return ResponseEntity.ok()
+                .eTag(ETags.ofList(page.getContent(), BeerDTO::getId, BeerDTO::getVersion,
+                        page.getPageNumber(), page.isHasNext(), page.getNextCursor(), ETags.representation(accept)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(page);
+    }
+
+    /**
+     * For clients keeping a copy of the catalog: only the beers created, updated or deleted
+     * after the since cursor (none: from the start), see ChangesDTO. Polling costs what changed,
+     * not the size of the catalog.
+     */
+    @GetMapping(value = BEER_PATH_CHANGES)
+    public ResponseEntity<ChangesDTO<BeerDTO>> getChanges(@RequestParam(required = false) Long since,
+                                                          @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(beerService.getChanges(since, limit));
+    }
+
+    /**
+     * Full catalog as newline-delimited JSON, one beer per line.
+     * StreamingResponseBody runs on an MVC async thread, freeing the Tomcat one,
+     * and each beer is written as soon as it is read: heap use does not
+     * depend on the catalog size.
+     */
+    @GetMapping(value = BEER_PATH_EXPORT, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportBeers() {
+        //the servlet stream must stay open between rows, and is flushed by its own buffer
+        ObjectWriter writer = objectMapper.writerFor(BeerDTO.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = out -> beerService.exportBeers(beer -> {
+            try {
+                writer.writeValue(out, beer);
+                out.write('\n');
+            } catch (IOException e) {
+                //client went away, abort the db stream as well
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -108,9 +288,27 @@ public class BeerController {
      * than on the parameter name (UUID id)
      */
     @GetMapping(value = BEER_PATH_ID)
-    public BeerDTO getBeerById(@PathVariable("beerId") UUID beerId) {
+    public ResponseEntity<BeerDTO> getBeerById(
+            @PathVariable("beerId") UUID beerId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+
+        log.debug("Get BeerDTO by Id - in beer controller; id={}", beerId);
+        MediaType representation = ETags.representation(accept);
+
+        //conditional GET: compare against the version only, the beer itself is never loaded
+        if (ifNoneMatch != null) {
+            Integer version = beerService.getBeerVersion(beerId).orElseThrow(NotFoundException::new);
+            String eTag = ETags.of(beerId, version, representation);
+            if (ETags.matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+            }
+        }
 
-        log.debug("Get BeerDTO by Id - in beer controller; id="+beerId.toString());
-        return beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+        BeerDTO beer = beerService.getBeerById(beerId).orElseThrow(NotFoundException::new);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(beer.getId(), beer.getVersion(), representation))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(beer);
     }
 }
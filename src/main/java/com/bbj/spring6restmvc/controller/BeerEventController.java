@@ -0,0 +1,35 @@
+package com.bbj.spring6restmvc.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+/**
+ * Beer changes pushed as server-sent events, see BeerChangeBroadcaster.
+ */
+@RequiredArgsConstructor
+@RestController
+public class BeerEventController {
+
+    public static final String BEER_PATH_EVENTS = BeerController.BEER_PATH + "/events";
+
+    private final BeerChangeBroadcaster broadcaster;
+
+    //EventSource resumes with Last-Event-ID on its own, since is the cursor of a GET /changes read
+    @GetMapping(value = BEER_PATH_EVENTS, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> subscribe(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId,
+                                                         @RequestParam(required = false) Long since) {
+        return broadcaster.subscribe(lastEventId != null ? lastEventId : since)
+                .map(emitter -> ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM).body(emitter))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .build());
+    }
+}
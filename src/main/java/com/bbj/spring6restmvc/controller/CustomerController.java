@@ -1,11 +1,13 @@
 package com.bbj.spring6restmvc.controller;
 
+import com.bbj.spring6restmvc.model.ChangesDTO;
 import com.bbj.spring6restmvc.model.CustomerDTO;
 import com.bbj.spring6restmvc.services.CustomerService;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -22,6 +24,7 @@ public class CustomerController {
 	
     public static final String CUSTOMER_PATH = "/api/v1/customer";
     public static final String CUSTOMER_PATH_ID = CUSTOMER_PATH + "/{customerId}";
+    public static final String CUSTOMER_PATH_CHANGES = CUSTOMER_PATH + "/changes";
 
     private final CustomerService customerService;
 
@@ -62,13 +65,44 @@ public class CustomerController {
     }
 
     @GetMapping(CUSTOMER_PATH)
-    public List<CustomerDTO> listAllCustomers(){
-        return customerService.getAllCustomers();
+    public ResponseEntity<List<CustomerDTO>> listAllCustomers(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept){
+        List<CustomerDTO> customers = customerService.getAllCustomers();
+
+        //Spring answers 304 on its own when If-None-Match matches, without writing the body
+        return ResponseEntity.ok()
+                .eTag(ETags.ofList(customers, CustomerDTO::getId, CustomerDTO::getVersion, ETags.representation(accept)))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(customers);
+    }
+
+    //customers created, updated or deleted after the since cursor, as for BeerController.getChanges()
+    @GetMapping(CUSTOMER_PATH_CHANGES)
+    public ResponseEntity<ChangesDTO<CustomerDTO>> getChanges(@RequestParam(required = false) Long since,
+                                                              @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(customerService.getChanges(since, limit));
     }
 
     @GetMapping(value = CUSTOMER_PATH_ID)
-    public CustomerDTO getCustomerById(@PathVariable("customerId") UUID id){
-        return customerService.getCustomerById(id).orElseThrow(NotFoundException::new);
+    public ResponseEntity<CustomerDTO> getCustomerById(@PathVariable("customerId") UUID id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept){
+        MediaType representation = ETags.representation(accept);
+
+        //conditional GET: compare against the version only, the customer itself is never loaded
+        if (ifNoneMatch != null) {
+            Integer version = customerService.getCustomerVersion(id).orElseThrow(NotFoundException::new);
+            String eTag = ETags.of(id, version, representation);
+            if (ETags.matches(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+            }
+        }
+
+        CustomerDTO customer = customerService.getCustomerById(id).orElseThrow(NotFoundException::new);
+        return ResponseEntity.ok()
+                .eTag(ETags.of(customer.getId(), customer.getVersion(), representation))
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(customer);
     }
 
 }
\ No newline at end of file
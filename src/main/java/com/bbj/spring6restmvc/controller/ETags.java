@@ -0,0 +1,128 @@
+package com.bbj.spring6restmvc.controller;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Strong ETags derived from the JPA @Version of our entities.
+ * A given id + version is always the same representation, so there is
+ * no need to serialize (or even load) a body to know its ETag.
+ * JSON and CBOR bodies are different bytes, so each has its own tag: the CBOR one ends
+ * with "-cbor". Responses whose tag depends on Accept also send Vary: Accept.
+ */
+public final class ETags {
+
+    static final String CBOR_SUFFIX = "-cbor";
+
+    private ETags() {
+    }
+
+    public static String of(UUID id, Integer version) {
+        return of(id, version, MediaType.APPLICATION_JSON);
+    }
+
+    public static String of(UUID id, Integer version, MediaType representation) {
+        return "\"" + id + "-" + version + suffix(representation) + "\"";
+    }
+
+    /**
+     * What a body is written as for this Accept header, as the message converters choose it:
+     * CBOR when preferred to JSON, else JSON (also the default, and for an Accept we cannot parse).
+     */
+    public static MediaType representation(String accept) {
+        if (accept == null) {
+            return MediaType.APPLICATION_JSON;
+        }
+        try {
+            List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(accepted);
+            for (MediaType type : accepted) {
+                if (type.getQualityValue() == 0) {
+                    continue;
+                }
+                if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    return MediaType.APPLICATION_JSON;
+                }
+                if (type.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                    return MediaType.APPLICATION_CBOR;
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            //Spring answers it
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private static String suffix(MediaType representation) {
+        return MediaType.APPLICATION_CBOR.isCompatibleWith(representation) ? CBOR_SUFFIX : "";
+    }
+
+    /**
+     * ETag of a list: digest of the id-version pairs of its items,
+     * plus whatever else shapes the response (page position, representation ...).
+     */
+    public static <T> String ofList(List<T> items, Function<T, UUID> id, Function<T, Integer> version,
+                                    Object... extra) {
+        StringBuilder key = new StringBuilder(items.size() * 40);
+        for (T item : items) {
+            key.append(id.apply(item)).append('-').append(version.apply(item)).append(',');
+        }
+        key.append(Arrays.toString(extra));
+        return "\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Version a client expects from its If-Match header, null when there is none or "*".
+     * If-Match needs the strong comparison: a weak tag, another id or a tag that is
+     * not one of ours can never match => 412. The tag of either representation will do.
+     */
+    public static Integer expectedVersion(String ifMatch, UUID id) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        String prefix = "\"" + id + "-";
+        if (!tag.startsWith(prefix) || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match does not match " + id);
+        }
+        String version = tag.substring(prefix.length(), tag.length() - 1);
+        if (version.endsWith(CBOR_SUFFIX)) {
+            version = version.substring(0, version.length() - CBOR_SUFFIX.length());
+        }
+        try {
+            return Integer.valueOf(version);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match " + id, e);
+        }
+    }
+
+    /**
+     * If-None-Match check: "*" or one of the listed tags (weak comparison, as the RFC asks for GET).
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+package com.bbj.spring6restmvc.controller;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The events waiting to be written to one subscriber of BeerChangeBroadcaster, not thread safe.
+ *
+ * Coalesced by beer: a newer event of a beer replaces the one still waiting and moves to the end,
+ * so a subscriber that is behind gets the last state of each beer once, and events still go out
+ * in feed order (the id sent after them never covers one not sent yet).
+ * Bounded: more than capacity beers waiting means the subscriber does not keep up.
+ */
+final class EventBuffer {
+
+    record Event(UUID beerId, String frame) {
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<UUID, String> frames = new LinkedHashMap<>();
+    //change feed cursor covering every event offered so far
+    private long cursor;
+
+    EventBuffer(int capacity, long cursor) {
+        this.capacity = Math.max(capacity, 1);
+        this.cursor = cursor;
+    }
+
+    long getCursor() {
+        return cursor;
+    }
+
+    boolean isEmpty() {
+        return frames.isEmpty();
+    }
+
+    /**
+     * Adds the events of one page of the feed, ending at pageCursor; a page this buffer
+     * already covers is ignored. False when over capacity.
+     */
+    boolean offer(List<Event> events, long pageCursor) {
+        if (pageCursor <= cursor) {
+            return true;
+        }
+        for (Event event : events) {
+            frames.remove(event.beerId());
+            frames.put(event.beerId(), event.frame());
+        }
+        cursor = pageCursor;
+        return frames.size() <= capacity;
+    }
+
+    /**
+     * Everything waiting as one text/event-stream chunk, null when nothing waits.
+     * It ends with the cursor as an id-only field: the client's Last-Event-ID, with no event fired.
+     */
+    String take() {
+        if (frames.isEmpty()) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        frames.values().forEach(text::append);
+        text.append("id:").append(cursor).append("\n\n");
+        frames.clear();
+        return text.toString();
+    }
+}
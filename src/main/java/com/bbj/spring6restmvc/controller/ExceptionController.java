@@ -0,0 +1,20 @@
+package com.bbj.spring6restmvc.controller;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Exceptions raised below the controllers, mapped to a status for every controller.
+ */
+@ControllerAdvice
+public class ExceptionController {
+
+    //the row is not at the version the client sent (If-Match or body): 412, re-read and retry
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Object> handleOptimisticLockingFailure() {
+        return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+    }
+}
@@ -7,6 +7,7 @@ import org.hibernate.annotations.GenericGenerator;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 //@Data can generate perf/mem issues => @Getter @Setter instead
@@ -14,6 +15,16 @@ import java.util.UUID;
 @Setter
 @Builder
 @Entity
+@Table(indexes = {
+        //backs keyset pagination: WHERE (update_date, id) > cursor ORDER BY update_date, id
+        @Index(name = "ix_beer_update_date_id", columnList = "updateDate, id"),
+        //style filter, already in keyset order: no sort step for a filtered page
+        @Index(name = "ix_beer_style_update_date_id", columnList = "beerStyle, updateDate, id"),
+        //name prefix search (LIKE 'abc%' is a range scan) and upc lookups
+        @Index(name = "ix_beer_name", columnList = "beerName"),
+        @Index(name = "ix_beer_upc", columnList = "upc"),
+        //change feed: WHERE change_seq > cursor ORDER BY change_seq
+        @Index(name = "ix_beer_change_seq", columnList = "changeSeq")})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Beer {
@@ -23,10 +34,10 @@ public class Beer {
             generator = "UUID")
     @GenericGenerator(                      //hibernate specific
             name = "UUID",
-            strategy = "org.hibernate.id.UUIDGenerator")
+            strategy = "com.bbj.spring6restmvc.entities.TimeOrderedUuidGenerator")
+    //no columnDefinition: the column type comes from hibernate.type.preferred_uuid_jdbc_type
+    //(native uuid / binary(16) by default, 16 bytes instead of 36 chars per key and index entry)
     @Column(                                //JPA
-            length = 36,
-            columnDefinition = "varchar",
             updatable = false,
             nullable = false)
     private UUID id;
@@ -48,5 +59,32 @@ public class Beer {
     private BigDecimal price;
     private LocalDateTime createdDate;
     private LocalDateTime updateDate;
+
+    /**
+     * Position of the last change of this beer in the change feed (BeerService.getChanges()).
+     * Never written by the application: any UPDATE of the row resets it to null (ON UPDATE NULL),
+     * whatever wrote it (JPA, JPQL, plain JDBC), and ChangeSequencer numbers the null ones.
+     */
+    @Column(insertable = false, updatable = false, columnDefinition = "bigint on update null")
+    private Long changeSeq;
+
+    /**
+     * The keyset cursor relies on updateDate never being null.
+     * Truncated to micros, what the timestamp column keeps: a cursor built from
+     * an entity still in memory must compare the same as the row in the db.
+     */
+    @PrePersist
+    void onCreate() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        if (createdDate == null) {
+            createdDate = now;
+        }
+        updateDate = now;
+    }
+
+    @PreUpdate
+    void onUpdate() {
+        updateDate = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
 }
 
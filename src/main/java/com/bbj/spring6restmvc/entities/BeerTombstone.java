@@ -0,0 +1,31 @@
+package com.bbj.spring6restmvc.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * What is left of a deleted beer: its id, for the change feed to tell clients to drop it.
+ * Written in the transaction of the delete, see ChangeFeedRepository.insertTombstones().
+ */
+@Getter
+@Setter
+@Builder
+@Entity
+@Table(indexes = @Index(name = "ix_beer_tombstone_change_seq", columnList = "changeSeq"))
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerTombstone {
+
+    @Id
+    @Column(updatable = false, nullable = false)
+    private UUID id;
+
+    //numbered by ChangeSequencer, in the same sequence as Beer.changeSeq
+    @Column(insertable = false, updatable = false)
+    private Long changeSeq;
+
+    private LocalDateTime deletedDate;
+}
@@ -12,6 +12,8 @@ import java.util.UUID;
 @Setter
 @Builder
 @Entity
+//change feed: WHERE change_seq > cursor ORDER BY change_seq
+@Table(indexes = @Index(name = "ix_customer_change_seq", columnList = "changeSeq"))
 @NoArgsConstructor
 @AllArgsConstructor
 public class Customer {
@@ -21,10 +23,10 @@ public class Customer {
             generator = "UUID")
     @GenericGenerator(                      //hibernate specific
             name = "UUID",
-            strategy = "org.hibernate.id.UUIDGenerator")
+            strategy = "com.bbj.spring6restmvc.entities.TimeOrderedUuidGenerator")
+    //no columnDefinition: the column type comes from hibernate.type.preferred_uuid_jdbc_type
+    //(native uuid / binary(16) by default, 16 bytes instead of 36 chars per key and index entry)
     @Column(                                //JPA
-            length = 36,                    //UUID take space but ensure really unique
-            columnDefinition = "varchar",
             updatable = false,
             nullable = false)
     private UUID id;
@@ -43,4 +45,8 @@ public class Customer {
 
     private LocalDateTime createdDate;
     private LocalDateTime updateDate;
+
+    //same as Beer.changeSeq: reset to null by any UPDATE, numbered by ChangeSequencer
+    @Column(insertable = false, updatable = false, columnDefinition = "bigint on update null")
+    private Long changeSeq;
 }
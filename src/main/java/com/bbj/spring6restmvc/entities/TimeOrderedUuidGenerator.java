@@ -0,0 +1,66 @@
+package com.bbj.spring6restmvc.entities;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Id generator of our entities, plugged in with @GenericGenerator.
+ *
+ * By default it makes time-ordered UUIDs (version 7 layout: 48 bits of unix millis first),
+ * so new rows land at the end of the primary key b-tree instead of on a random page.
+ * spring.jpa.properties.bbj.uuid.time-ordered=false goes back to random (version 4) UUIDs.
+ */
+public class TimeOrderedUuidGenerator implements IdentifierGenerator {
+
+    public static final String TIME_ORDERED_SETTING = "bbj.uuid.time-ordered";
+
+    /*
+     * unix millis << 12 | 12 bit counter, shared by all threads.
+     * Each id takes max(now, last + 1) with a CAS: ids are strictly increasing even
+     * within one millisecond, and past 4096 ids in a millisecond the counter simply
+     * carries into the next one.
+     */
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+
+    private boolean timeOrdered = true;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        timeOrdered = serviceRegistry.getService(ConfigurationService.class)
+                .getSetting(TIME_ORDERED_SETTING, StandardConverters.BOOLEAN, true);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return timeOrdered ? next() : UUID.randomUUID();
+    }
+
+    /**
+     * Next time-ordered UUID, also usable outside of hibernate (bulk loads ...).
+     */
+    public static UUID next() {
+        long timestamp;
+        while (true) {
+            long last = LAST_TIMESTAMP.get();
+            timestamp = Math.max(System.currentTimeMillis() << 12, last + 1);
+            if (LAST_TIMESTAMP.compareAndSet(last, timestamp)) {
+                break;
+            }
+        }
+        long millis = timestamp >>> 12;
+        long counter = timestamp & 0xFFF;
+
+        long mostSigBits = (millis << 16) | (0x7L << 12) | counter;              //version 7
+        long leastSigBits = (ThreadLocalRandom.current().nextLong() >>> 2) | (0x2L << 62); //IETF variant
+        return new UUID(mostSigBits, leastSigBits);
+    }
+}
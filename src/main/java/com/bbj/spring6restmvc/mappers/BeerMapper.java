@@ -3,10 +3,13 @@ package com.bbj.spring6restmvc.mappers;
 import com.bbj.spring6restmvc.entities.Beer;
 import com.bbj.spring6restmvc.model.BeerDTO;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper
 public interface BeerMapper {
 
+    //the change feed position is the db's own, see Beer.changeSeq
+    @Mapping(target = "changeSeq", ignore = true)
     Beer beerDtoToBeer(BeerDTO dto);
     BeerDTO beerToBeerDto(Beer beer);
 }
@@ -3,10 +3,13 @@ package com.bbj.spring6restmvc.mappers;
 import com.bbj.spring6restmvc.entities.Customer;
 import com.bbj.spring6restmvc.model.CustomerDTO;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper
 public interface CustomerMapper {
 
+    //the change feed position is the db's own, see Customer.changeSeq
+    @Mapping(target = "changeSeq", ignore = true)
     Customer customerDtoToCustomer(CustomerDTO dto);
     CustomerDTO customerToCustomerDto(Customer customer);
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.bbj.spring6restmvc.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * Outcome of one item of a batch request.
+ * status is the HTTP status the same item would get on the single-item endpoint.
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResultDTO {
+    private UUID id;
+    private Integer status;
+    private String location;
+    //the version after an update, when the request said which one it updated
+    private Integer version;
+}
@@ -0,0 +1,40 @@
+package com.bbj.spring6restmvc.model;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset position in the (updateDate, id) ordering of beers.
+ * Sent to clients as an opaque token so they never build it by hand.
+ *
+ * valueOf(String) lets Spring bind it directly from a request param,
+ * a token that does not decode is answered with a 400.
+ */
+@Value
+public class BeerCursor {
+    LocalDateTime updateDate;
+    UUID id;
+
+    public static BeerCursor of(BeerDTO beer) {
+        return new BeerCursor(beer.getUpdateDate(), beer.getId());
+    }
+
+    public static BeerCursor valueOf(String token) {
+        String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf('|');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor: " + token);
+        }
+        return new BeerCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                UUID.fromString(decoded.substring(separator + 1)));
+    }
+
+    public String encode() {
+        String raw = updateDate + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,5 +1,6 @@
 package com.bbj.spring6restmvc.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
@@ -7,8 +8,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
-@Builder
+@Builder(toBuilder = true)
 @Data
+@AllArgsConstructor //public, for the "select new" projections of the repositories
 public class BeerDTO {
     private UUID id;
     private Integer version;
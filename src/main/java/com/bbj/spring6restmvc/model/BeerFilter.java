@@ -0,0 +1,42 @@
+package com.bbj.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.util.StringUtils;
+
+/**
+ * Optional filters of GET /api/v1/beer, null or blank fields are ignored.
+ * beerName is matched case-sensitively, as stored, so that a prefix
+ * search stays an index range scan.
+ */
+@Value
+@Builder
+public class BeerFilter {
+
+    String beerName;
+    BeerNameMatch nameMatch;
+    BeerStyle beerStyle;
+    String upc;
+
+    public BeerNameMatch getNameMatch() {
+        return nameMatch == null ? BeerNameMatch.PREFIX : nameMatch;
+    }
+
+    //same rules as BeerSpecifications.matching(), for the in-memory service
+    public boolean matches(BeerDTO beer) {
+        if (beerStyle != null && beerStyle != beer.getBeerStyle()) {
+            return false;
+        }
+        if (StringUtils.hasText(upc) && !upc.equals(beer.getUpc())) {
+            return false;
+        }
+        if (StringUtils.hasText(beerName)) {
+            String name = beer.getBeerName();
+            if (name == null) {
+                return false;
+            }
+            return getNameMatch() == BeerNameMatch.PREFIX ? name.startsWith(beerName) : name.contains(beerName);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+package com.bbj.spring6restmvc.model;
+
+/**
+ * How the "beerName" filter of GET /api/v1/beer is compared.
+ * PREFIX is a range scan of the beer_name index; CONTAINS cannot use it
+ * (leading wildcard) and reads the whole index instead.
+ */
+public enum BeerNameMatch {
+    PREFIX,
+    CONTAINS
+}
@@ -0,0 +1,24 @@
+package com.bbj.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of beers. There is deliberately no total count:
+ * hasNext is known by fetching one extra row, which keeps a page as cheap
+ * as its size whatever the size of the table.
+ *
+ * nextCursor is only set when the page is in (updateDate, id) order,
+ * pass it back as "cursor" to get the following page by keyset.
+ */
+@Data
+@Builder
+public class BeerPageDTO {
+    private List<BeerDTO> content;
+    private Integer pageNumber;
+    private Integer pageSize;
+    private boolean hasNext;
+    private String nextCursor;
+}
@@ -0,0 +1,26 @@
+package com.bbj.spring6restmvc.model;
+
+/**
+ * Sortable columns of GET /api/v1/beer.
+ * Bound straight from the "sortBy" request param, so an unknown value is a 400
+ * instead of an arbitrary property reaching the JPA query.
+ */
+public enum BeerSortField {
+    BEER_NAME("beerName"),
+    BEER_STYLE("beerStyle"),
+    UPC("upc"),
+    PRICE("price"),
+    QUANTITY_ON_HAND("quantityOnHand"),
+    CREATED_DATE("createdDate"),
+    UPDATE_DATE("updateDate");
+
+    private final String property;
+
+    BeerSortField(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+}
@@ -0,0 +1,23 @@
+package com.bbj.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * What changed after a cursor of the change feed: the items created or updated since,
+ * as they are now, and the ids of those deleted since.
+ *
+ * Pass cursor back as "since" to get the following changes; hasMore means there are more
+ * right away. An item changed again later comes again, with a later cursor.
+ */
+@Data
+@Builder
+public class ChangesDTO<T> {
+    private List<T> changed;
+    private List<UUID> deleted;
+    private Long cursor;
+    private boolean hasMore;
+}
@@ -1,5 +1,6 @@
 package com.bbj.spring6restmvc.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
@@ -10,7 +11,8 @@ import java.util.UUID;
  * Created by jt, Spring Framework Guru.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
+@AllArgsConstructor //public, for the "select new" projections of the repositories
 public class CustomerDTO {
     private UUID id;
     private String name;
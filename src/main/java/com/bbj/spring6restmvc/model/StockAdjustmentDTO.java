@@ -0,0 +1,18 @@
+package com.bbj.spring6restmvc.model;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * Change to the stock of one beer: a negative delta takes units out (an order),
+ * a positive one puts them back (restock).
+ * beerId is only read by the batch endpoint, the single one takes it from the path.
+ */
+@Data
+@Builder
+public class StockAdjustmentDTO {
+    private UUID beerId;
+    private Integer delta;
+}
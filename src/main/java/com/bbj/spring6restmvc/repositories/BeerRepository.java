@@ -1,9 +1,85 @@
 package com.bbj.spring6restmvc.repositories;
 
 import com.bbj.spring6restmvc.entities.Beer;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface BeerRepository extends JpaRepository<Beer, UUID> {
+public interface BeerRepository extends JpaRepository<Beer, UUID>,
+        JpaSpecificationExecutor<Beer>, BeerRepositoryCustom {
+
+    int EXPORT_FETCH_SIZE = 500;
+
+    /**
+     * Whole table as a cursor-backed stream, rows are pulled from the driver
+     * EXPORT_FETCH_SIZE at a time. Read-only: hibernate keeps no snapshot for dirty checking.
+     * Must be consumed inside a transaction and closed (try-with-resources).
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select b from Beer b")
+    Stream<Beer> streamAll();
+
+    /**
+     * One beer read straight into a BeerDTO, never a managed entity.
+     * What BeerDtoCache loads: no read-only transaction, so it is read from the primary, never a replica
+     * that may lag (ReadWriteRoutingDataSource), and the cache only ever holds committed primary state.
+     */
+    @Query("select new com.bbj.spring6restmvc.model.BeerDTO(b.id, b.version, b.beerName, b.beerStyle, b.upc, "
+            + "b.quantityOnHand, b.price, b.createdDate, b.updateDate) from Beer b where b.id = :id")
+    Optional<BeerDTO> findBeerDtoById(UUID id);
+
+    //the beers of a page of the change feed, same columns as findBeerDtoById()
+    @Query("select new com.bbj.spring6restmvc.model.BeerDTO(b.id, b.version, b.beerName, b.beerStyle, b.upc, "
+            + "b.quantityOnHand, b.price, b.createdDate, b.updateDate) from Beer b where b.id in :ids")
+    List<BeerDTO> findBeerDtosByIds(Collection<UUID> ids);
+
+    //which of these beers exist, one IN query
+    @Query("select b.id from Beer b where b.id in :ids")
+    List<UUID> findExistingIds(Collection<UUID> ids);
+
+    //stock of one beer, 0 when not set (BeerStockBuffer)
+    @Query("select coalesce(b.quantityOnHand, 0) from Beer b where b.id = :id")
+    Optional<Integer> findQuantityOnHandById(UUID id);
+
+    //primary key lookup returning one int, enough to answer a conditional GET.
+    //Primary as findBeerDtoById(): its answer is compared with what the cache holds
+    @Query("select b.version from Beer b where b.id = :id")
+    Optional<Integer> findVersionById(UUID id);
+
+    /**
+     * One DELETE by primary key, nothing loaded first. Returns the number of rows deleted (0 or 1).
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Beer b where b.id = :id")
+    int deleteBeerById(UUID id);
+
+    /**
+     * Full replace of a beer as one UPDATE, no select before.
+     * With a version it only applies if the row still has that version (optimistic lock
+     * checked by the db itself), null skips the check. Returns the number of rows updated.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Beer b set b.beerName = :beerName, b.beerStyle = :beerStyle, b.upc = :upc, "
+            + "b.quantityOnHand = :quantityOnHand, b.price = :price, "
+            + "b.version = b.version + 1, b.updateDate = :updateDate "
+            + "where b.id = :id and (:version is null or b.version = :version)")
+    int updateBeer(UUID id, Integer version, String beerName, BeerStyle beerStyle, String upc,
+                   Integer quantityOnHand, BigDecimal price, LocalDateTime updateDate);
 }
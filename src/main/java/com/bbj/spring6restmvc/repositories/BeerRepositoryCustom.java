@@ -0,0 +1,53 @@
+package com.bbj.spring6restmvc.repositories;
+
+import com.bbj.spring6restmvc.entities.Beer;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Queries Spring Data cannot derive for us, implemented in BeerRepositoryImpl.
+ */
+public interface BeerRepositoryCustom {
+
+    /**
+     * Like JpaSpecificationExecutor.findAll(spec, pageable) but returns a Slice:
+     * one extra row is fetched to know if there is a next page,
+     * so no COUNT(*) is ever issued.
+     */
+    Slice<Beer> findSlice(Specification<Beer> spec, Pageable pageable);
+
+    /**
+     * Same query as findSlice(), but the rows are read straight into BeerDTOs:
+     * no managed entities, so no snapshots and nothing to dirty check at flush.
+     */
+    Slice<BeerDTO> findDtoSlice(Specification<Beer> spec, Pageable pageable);
+
+    /**
+     * One UPDATE setting only the non-null properties of changes, and bumping the version.
+     * With a version, it only applies if the row still has it.
+     * Returns the number of rows updated (0: no such beer, or not that version).
+     */
+    int patchBeer(UUID id, Integer version, Beer changes);
+
+    /**
+     * Full replace of every beer of the list (by id), as the UPDATE of BeerRepository.updateBeer(),
+     * sent as JDBC batches of batchSize statements. A beer with a version only applies if the row
+     * still has it. Returns the rows updated by each beer, in list order.
+     */
+    int[] updateBeers(List<BeerDTO> beers, LocalDateTime updateDate, int batchSize);
+
+    /**
+     * quantityOnHand += delta for every adjustment of the list, in one guarded UPDATE each
+     * (sent as JDBC batches of batchSize statements): it only applies if the stock stays >= 0.
+     * The version is bumped but never checked. Returns the rows updated by each adjustment, in list order
+     * (0: no such beer, or not enough stock). Also what BeerStockBuffer flushes its summed deltas with.
+     */
+    int[] adjustStock(List<StockAdjustmentDTO> adjustments, LocalDateTime updateDate, int batchSize);
+}
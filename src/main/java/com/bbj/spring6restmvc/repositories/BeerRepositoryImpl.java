@@ -0,0 +1,179 @@
+package com.bbj.spring6restmvc.repositories;
+
+import com.bbj.spring6restmvc.entities.Beer;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+//picked up by Spring Data because of the "Impl" postfix of BeerRepositoryCustom
+public class BeerRepositoryImpl implements BeerRepositoryCustom {
+
+    //plain SQL: JPQL bulk updates are never JDBC batched, one round trip each
+    static final String UPDATE_BEER = "update beer set beer_name = ?, beer_style = ?, upc = ?, "
+            + "quantity_on_hand = ?, price = ?, version = version + 1, update_date = ? "
+            + "where id = ? and version = coalesce(?, version)";
+
+    //the stock only ever moves by delta, and never below 0: no need to know (or check) the version first
+    static final String ADJUST_STOCK = "update beer set quantity_on_hand = coalesce(quantity_on_hand, 0) + ?, "
+            + "version = version + 1, update_date = ? "
+            + "where id = ? and coalesce(quantity_on_hand, 0) + ? >= 0";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //joins the JPA transaction, JpaTransactionManager exposes its connection
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Slice<Beer> findSlice(Specification<Beer> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Beer> query = cb.createQuery(Beer.class);
+        Root<Beer> root = query.from(Beer.class);
+        return slice(query, root, spec, pageable);
+    }
+
+    @Override
+    public Slice<BeerDTO> findDtoSlice(Specification<Beer> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BeerDTO> query = cb.createQuery(BeerDTO.class);
+        Root<Beer> root = query.from(Beer.class);
+        //same columns, same order as BeerRepository.findBeerDtoById()
+        query.select(cb.construct(BeerDTO.class, root.get("id"), root.get("version"), root.get("beerName"),
+                root.get("beerStyle"), root.get("upc"), root.get("quantityOnHand"), root.get("price"),
+                root.get("createdDate"), root.get("updateDate")));
+        return slice(query, root, spec, pageable);
+    }
+
+    private <T> Slice<T> slice(CriteriaQuery<T> query, Root<Beer> root, Specification<Beer> spec, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        query.orderBy(toOrders(pageable.getSort(), root, cb));
+
+        //one row more than asked tells us if there is a next page
+        List<T> rows = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1)
+                .getResultList();
+
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<T> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public int patchBeer(UUID id, Integer version, Beer changes) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Beer> update = cb.createCriteriaUpdate(Beer.class);
+        Root<Beer> root = update.from(Beer.class);
+
+        boolean hasChanges = false;
+        if (changes.getBeerName() != null) {
+            update.set(root.get("beerName"), changes.getBeerName());
+            hasChanges = true;
+        }
+        if (changes.getBeerStyle() != null) {
+            update.set(root.get("beerStyle"), changes.getBeerStyle());
+            hasChanges = true;
+        }
+        if (changes.getUpc() != null) {
+            update.set(root.get("upc"), changes.getUpc());
+            hasChanges = true;
+        }
+        if (changes.getQuantityOnHand() != null) {
+            update.set(root.get("quantityOnHand"), changes.getQuantityOnHand());
+            hasChanges = true;
+        }
+        if (changes.getPrice() != null) {
+            update.set(root.get("price"), changes.getPrice());
+            hasChanges = true;
+        }
+
+        if (!hasChanges) {
+            //nothing to write, still tell the caller if the beer (at that version) is there
+            return findVersion(id)
+                    .filter(current -> version == null || version.equals(current))
+                    .isPresent() ? 1 : 0;
+        }
+
+        update.set(root.<Integer>get("version"), cb.sum(root.get("version"), 1));
+        update.set(root.get("updateDate"), LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+
+        Predicate where = cb.equal(root.get("id"), id);
+        if (version != null) {
+            where = cb.and(where, cb.equal(root.get("version"), version));
+        }
+        update.where(where);
+
+        int updated = entityManager.createQuery(update).executeUpdate();
+        //managed copies of this beer (open session in view) are now stale
+        entityManager.clear();
+        return updated;
+    }
+
+    @Override
+    public int[] updateBeers(List<BeerDTO> beers, LocalDateTime updateDate, int batchSize) {
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_BEER, beers, Math.max(batchSize, 1), (statement, beer) -> {
+            statement.setString(1, beer.getBeerName());
+            statement.setObject(2, beer.getBeerStyle() == null ? null : beer.getBeerStyle().ordinal(), Types.INTEGER);
+            statement.setString(3, beer.getUpc());
+            statement.setObject(4, beer.getQuantityOnHand(), Types.INTEGER);
+            statement.setBigDecimal(5, beer.getPrice());
+            statement.setObject(6, updateDate);
+            statement.setObject(7, beer.getId());
+            statement.setObject(8, beer.getVersion(), Types.INTEGER);
+        });
+        //managed copies of these beers (open session in view) are now stale
+        entityManager.clear();
+        return Arrays.stream(counts).flatMapToInt(Arrays::stream).toArray();
+    }
+
+    @Override
+    public int[] adjustStock(List<StockAdjustmentDTO> adjustments, LocalDateTime updateDate, int batchSize) {
+        int[][] counts = jdbcTemplate.batchUpdate(ADJUST_STOCK, adjustments, Math.max(batchSize, 1),
+                (statement, adjustment) -> {
+                    statement.setInt(1, adjustment.getDelta());
+                    statement.setObject(2, updateDate);
+                    statement.setObject(3, adjustment.getBeerId());
+                    statement.setInt(4, adjustment.getDelta());
+                });
+        //managed copies of these beers (open session in view) are now stale
+        entityManager.clear();
+        return Arrays.stream(counts).flatMapToInt(Arrays::stream).toArray();
+    }
+
+    private Optional<Integer> findVersion(UUID id) {
+        return entityManager.createQuery("select b.version from Beer b where b.id = :id", Integer.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+    }
+}
@@ -0,0 +1,77 @@
+package com.bbj.spring6restmvc.repositories;
+
+import com.bbj.spring6restmvc.entities.Beer;
+import com.bbj.spring6restmvc.model.BeerCursor;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerNameMatch;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable predicates for BeerRepository.findSlice().
+ */
+public final class BeerSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private BeerSpecifications() {
+    }
+
+    /**
+     * Keyset predicate: rows strictly after the cursor in (updateDate, id) order.
+     * Served by the (update_date, id) index, so page N costs the same as page 1.
+     */
+    public static Specification<Beer> after(BeerCursor cursor, Sort.Direction direction) {
+        return (root, query, cb) -> {
+            if (direction.isAscending()) {
+                return cb.or(
+                        cb.greaterThan(root.get("updateDate"), cursor.getUpdateDate()),
+                        cb.and(cb.equal(root.get("updateDate"), cursor.getUpdateDate()),
+                                cb.greaterThan(root.get("id"), cursor.getId())));
+            }
+            return cb.or(
+                    cb.lessThan(root.get("updateDate"), cursor.getUpdateDate()),
+                    cb.and(cb.equal(root.get("updateDate"), cursor.getUpdateDate()),
+                            cb.lessThan(root.get("id"), cursor.getId())));
+        };
+    }
+
+    /**
+     * Filter predicate, null when there is nothing to filter on.
+     * Each field is backed by an index of Beer, see its @Table.
+     */
+    public static Specification<Beer> matching(BeerFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (filter.getBeerStyle() != null) {
+                predicates.add(cb.equal(root.get("beerStyle"), filter.getBeerStyle()));
+            }
+            if (StringUtils.hasText(filter.getUpc())) {
+                predicates.add(cb.equal(root.get("upc"), filter.getUpc()));
+            }
+            if (StringUtils.hasText(filter.getBeerName())) {
+                String escaped = escapeLike(filter.getBeerName());
+                String pattern = filter.getNameMatch() == BeerNameMatch.PREFIX
+                        ? escaped + "%"
+                        : "%" + escaped + "%";
+                predicates.add(cb.like(root.get("beerName"), pattern, LIKE_ESCAPE));
+            }
+            return predicates.isEmpty() ? null : cb.and(predicates.toArray(Predicate[]::new));
+        };
+    }
+
+    //a "%" or "_" typed by the client is a literal, not a wildcard
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -0,0 +1,103 @@
+package com.bbj.spring6restmvc.repositories;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Plain SQL of the change feed, shared by beers and customers.
+ *
+ * A changed row has change_seq null (see Beer.changeSeq) until ChangeSequencer gives it the next
+ * value of the change_seq sequence; deletes leave a tombstone row, numbered the same way.
+ * Reading the changes after a cursor is then an index range scan of both tables.
+ */
+@Repository
+public class ChangeFeedRepository {
+
+    public enum Feed {
+        BEER("beer", "beer_tombstone"),
+        CUSTOMER("customer", "customer_tombstone");
+
+        private final String table;
+        private final String tombstoneTable;
+
+        Feed(String table, String tombstoneTable) {
+            this.table = table;
+            this.tombstoneTable = tombstoneTable;
+        }
+    }
+
+    /**
+     * One entry of the feed: the row of that id changed (or was deleted) at seq.
+     */
+    public record Change(UUID id, long seq, boolean deleted) {
+    }
+
+    static final String CREATE_SEQUENCE = "create sequence if not exists change_seq";
+
+    //the rows written since the last pass, chunk by chunk
+    static final String ASSIGN_SEQ = "update %s set change_seq = next value for change_seq "
+            + "where change_seq is null fetch first ? rows only";
+
+    //one statement over both tables: one consistent snapshot of the two, each side read by its index
+    static final String FIND_CHANGES = "select id, change_seq, deleted from ("
+            + "(select id, change_seq, false as deleted from %1$s where change_seq > ? "
+            + "order by change_seq fetch first ? rows only) "
+            + "union all "
+            + "(select id, change_seq, true as deleted from %2$s where change_seq > ? "
+            + "order by change_seq fetch first ? rows only)) "
+            + "order by change_seq fetch first ? rows only";
+
+    static final String FIND_LATEST_SEQ = "select greatest(coalesce((select max(change_seq) from %1$s), 0), "
+            + "coalesce((select max(change_seq) from %2$s), 0))";
+
+    static final String INSERT_TOMBSTONE = "insert into %s (id, deleted_date) values (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //joins the JPA transaction, JpaTransactionManager exposes its connection
+    public ChangeFeedRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void createSequence() {
+        jdbcTemplate.execute(CREATE_SEQUENCE);
+    }
+
+    /**
+     * Numbers at most chunkSize rows of the table whose change_seq is null, returns how many.
+     */
+    public int assignSeqs(Feed feed, boolean tombstones, int chunkSize) {
+        return jdbcTemplate.update(ASSIGN_SEQ.formatted(tombstones ? feed.tombstoneTable : feed.table), chunkSize);
+    }
+
+    /**
+     * At most limit changes (updated rows and tombstones) numbered after since, in seq order.
+     */
+    public List<Change> findChanges(Feed feed, long since, int limit) {
+        return jdbcTemplate.query(FIND_CHANGES.formatted(feed.table, feed.tombstoneTable),
+                (rs, rowNum) -> new Change(rs.getObject(1, UUID.class), rs.getLong(2), rs.getBoolean(3)),
+                since, limit, since, limit, limit);
+    }
+
+    /**
+     * Seq of the last change numbered so far (0 when none), one index lookup per table.
+     */
+    public long findLatestSeq(Feed feed) {
+        return jdbcTemplate.queryForObject(FIND_LATEST_SEQ.formatted(feed.table, feed.tombstoneTable), Long.class);
+    }
+
+    public void insertTombstones(Feed feed, List<UUID> ids, LocalDateTime deletedDate) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_TOMBSTONE.formatted(feed.tombstoneTable), ids, ids.size(),
+                (statement, id) -> {
+                    statement.setObject(1, id);
+                    statement.setObject(2, deletedDate);
+                });
+    }
+}
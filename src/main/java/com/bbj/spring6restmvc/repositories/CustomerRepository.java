@@ -1,9 +1,36 @@
 package com.bbj.spring6restmvc.repositories;
 
 import com.bbj.spring6restmvc.entities.Customer;
+import com.bbj.spring6restmvc.model.CustomerDTO;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface CustomerRepository extends JpaRepository<Customer, UUID> {
+
+    //reads straight into DTOs: no managed entities, nothing to snapshot or dirty check
+    @Transactional(readOnly = true)
+    @Query("select new com.bbj.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, c.createdDate, c.updateDate) "
+            + "from Customer c where c.id = :id")
+    Optional<CustomerDTO> findCustomerDtoById(UUID id);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.bbj.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, c.createdDate, c.updateDate) "
+            + "from Customer c")
+    List<CustomerDTO> findAllCustomerDtos();
+
+    //the customers of a page of the change feed
+    @Query("select new com.bbj.spring6restmvc.model.CustomerDTO(c.id, c.name, c.version, c.createdDate, c.updateDate) "
+            + "from Customer c where c.id in :ids")
+    List<CustomerDTO> findCustomerDtosByIds(Collection<UUID> ids);
+
+    //primary key lookup returning one int, enough to answer a conditional GET
+    @Transactional(readOnly = true)
+    @Query("select c.version from Customer c where c.id = :id")
+    Optional<Integer> findVersionById(UUID id);
 }
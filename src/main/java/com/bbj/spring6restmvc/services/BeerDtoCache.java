@@ -0,0 +1,86 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of BeerDTOs by id, bounded in size and expiring after a TTL.
+ *
+ * Staying consistent with the db without re-reading the version on every hit:
+ * - a miss loads inside Caffeine's per-key compute, an evict() of the same id
+ *   waits for that load and then removes what it put
+ * - writers evict only after their transaction has committed
+ * - loads read the primary (BeerRepository.findBeerDtoById()), not a read replica: a replica
+ *   further behind than bbj.datasource.replica-lag would put an old row in for the whole TTL
+ * So a load that read the old row is always followed by the eviction of the new one,
+ * and a cached DTO (version included) is the last committed state.
+ */
+@Component
+public class BeerDtoCache {
+
+    private final Cache<UUID, BeerDTO> cache;
+
+    public BeerDtoCache(@Value("${beer.cache.maximum-size:10000}") long maximumSize,
+                        @Value("${beer.cache.ttl:10m}") Duration ttl,
+                        MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        //cache.gets{result=hit|miss}, cache.evictions, cache.size ...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "beers");
+    }
+
+    /**
+     * Cached beer, or the loader's result (cached if present).
+     * A missing beer is not cached: unknown ids cannot fill the cache.
+     */
+    public Optional<BeerDTO> get(UUID beerId, Function<UUID, Optional<BeerDTO>> loader) {
+        BeerDTO beer = cache.get(beerId, id -> loader.apply(id).orElse(null));
+        //BeerDTO is mutable, never hand out the cached instance
+        return Optional.ofNullable(beer).map(cached -> cached.toBuilder().build());
+    }
+
+    public Optional<BeerDTO> getIfPresent(UUID beerId) {
+        return Optional.ofNullable(cache.getIfPresent(beerId)).map(cached -> cached.toBuilder().build());
+    }
+
+    /**
+     * Drops the beer once the current transaction commits (right away outside of one),
+     * so a concurrent reader cannot put the pre-commit row back.
+     */
+    public void evict(UUID beerId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(beerId);
+                }
+            });
+        } else {
+            cache.invalidate(beerId);
+        }
+    }
+
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
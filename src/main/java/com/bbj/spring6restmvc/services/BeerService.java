@@ -1,17 +1,77 @@
 package com.bbj.spring6restmvc.services;
 
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerCursor;
 import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerSortField;
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
+import org.springframework.data.domain.Sort;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface BeerService {
-    List<BeerDTO> listBeers();
+    /**
+     * With a cursor (or no sortBy) beers come in (updateDate, id) order and the page
+     * carries the cursor of the next one; with sortBy it is plain page number / size.
+     * The filter narrows the beers before paging. All params are optional.
+     */
+    BeerPageDTO listBeers(BeerFilter filter, BeerCursor cursor, Integer pageNumber, Integer pageSize,
+                          BeerSortField sortBy, Sort.Direction direction);
+    /**
+     * Hands every beer to the consumer one at a time,
+     * nothing but the current row is held in memory.
+     */
+    void exportBeers(Consumer<BeerDTO> consumer);
     Optional<BeerDTO> getBeerById(UUID id);
+    /**
+     * Current @Version of the beer without loading it, for ETag checks.
+     */
+    Optional<Integer> getBeerVersion(UUID id);
     //BeerDTO getBeerById(UUID id);
     BeerDTO saveNewBeer(BeerDTO beer);
+    /**
+     * Saves all beers in one transaction, sent to the db in JDBC batches.
+     * Results come back in the same order as the input.
+     */
+    List<BeerDTO> saveNewBeers(List<BeerDTO> beers);
     Optional<BeerDTO> updateBeerById(UUID beerId, BeerDTO beer);
-    void deleteById(UUID beerId);
-    void patchBeerById(UUID beerId, BeerDTO beer);
+    /**
+     * False when there was no such beer.
+     */
+    boolean deleteById(UUID beerId);
+    /**
+     * Only the non-null properties of beer are changed. False when there is no such beer.
+     */
+    boolean patchBeerById(UUID beerId, BeerDTO beer);
+    /**
+     * Full replace of every beer of the list, found by its id, version checked when set.
+     * One result per beer in input order, with the status of the single-item PUT:
+     * 204 updated, 404 no such beer, 412 stale version, 400 no id.
+     */
+    List<BatchItemResultDTO> updateBeers(List<BeerDTO> beers);
+    /**
+     * One result per id in input order: 204 deleted, 404 no such beer, 400 no id.
+     */
+    List<BatchItemResultDTO> deleteBeers(List<UUID> beerIds);
+    /**
+     * Moves the stock of each beer by its delta, atomically and whatever its version
+     * (which is bumped), but never below 0. One result per adjustment in input order:
+     * 204 applied, 404 no such beer, 409 not enough stock, 400 no beer id or delta.
+     */
+    List<BatchItemResultDTO> adjustStock(List<StockAdjustmentDTO> adjustments);
+    /**
+     * Beers created, updated or deleted after the since cursor (0 or null: from the start),
+     * at most limit of them in change order, with the cursor to pass next time.
+     */
+    ChangesDTO<BeerDTO> getChanges(Long since, Integer limit);
+    /**
+     * Cursor of the last change so far: getChanges() from there only returns what changes next.
+     */
+    long getLatestChangeCursor();
 }
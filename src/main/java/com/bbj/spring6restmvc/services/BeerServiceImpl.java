@@ -1,25 +1,66 @@
 package com.bbj.spring6restmvc.services;
 
+import com.bbj.spring6restmvc.config.MetricsConfig;
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerCursor;
 import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerSortField;
 import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 @Slf4j
+@Timed(MetricsConfig.SERVICE_TIMER)
 @Service
 public class BeerServiceImpl implements BeerService {
 
-    //beers are stored in a HashMap, initialized in the constructor
-    private Map<UUID, BeerDTO> beerMap;
+    /*
+     * Used as the no-db store of load tests, so it has to be safe under many threads:
+     * - a stored BeerDTO is never modified: every write builds a new version (copy on write)
+     *   and swaps it in with compute(), which only locks the bin of that id
+     * - callers only ever get copies, so they cannot change the store behind our back
+     * - styleIndex / upcIndex are secondary indexes, maintained inside the same compute()
+     *   so they follow each write of an id; readers still re-check the predicate
+     *   because they may see an index entry a moment before/after the beer itself.
+     *   A key goes away with its last id, so churn on upc values does not pile up empty sets
+     * - byKeysetOrder holds the stored beers in listing order (updateDate, id), same upkeep:
+     *   readers skip the versions that are no longer the stored one
+     */
+    private static final Comparator<BeerDTO> KEYSET_ORDER = Comparator.comparing(BeerDTO::getUpdateDate,
+            Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+            .thenComparing(BeerDTO::getId);
 
-    //the constructor creates 3 beers and add it to the beerMap HashMap
+    private final ConcurrentMap<UUID, BeerDTO> beerMap = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<BeerDTO> byKeysetOrder = new ConcurrentSkipListSet<>(KEYSET_ORDER);
+    private final ConcurrentMap<BeerStyle, Set<UUID>> styleIndex = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<UUID>> upcIndex = new ConcurrentHashMap<>();
+    //appended inside the same compute() too: the feed follows the writes of an id in order
+    private final InMemoryChangeLog changeLog = new InMemoryChangeLog();
+
+    //the constructor creates 3 beers and add it to the beerMap
     public BeerServiceImpl() {
-        this.beerMap = new HashMap<>();
 
         BeerDTO beer1 = BeerDTO.builder()
                 .id(UUID.randomUUID())
@@ -57,14 +98,101 @@ public class BeerServiceImpl implements BeerService {
                 .updateDate(LocalDateTime.now())
                 .build();
 
-        beerMap.put(beer1.getId(), beer1);
-        beerMap.put(beer2.getId(), beer2);
-        beerMap.put(beer3.getId(), beer3);
+        store(beer1);
+        store(beer2);
+        store(beer3);
     }
 
-    @Override
+    //unpaged view, handy for tests
     public List<BeerDTO> listBeers() {
-        return new ArrayList<>(beerMap.values());
+        return beerMap.values().stream().map(BeerServiceImpl::copy).toList();
+    }
+
+    public List<BeerDTO> listBeersByStyle(BeerStyle beerStyle) {
+        return lookup(styleIndex.get(beerStyle), beer -> beerStyle == beer.getBeerStyle());
+    }
+
+    public List<BeerDTO> listBeersByUpc(String upc) {
+        return lookup(upcIndex.get(upc), beer -> upc.equals(beer.getUpc()));
+    }
+
+    @Override
+    public BeerPageDTO listBeers(BeerFilter filter, BeerCursor cursor, Integer pageNumber, Integer pageSize,
+                                 BeerSortField sortBy, Sort.Direction direction) {
+        int size = Paging.pageSize(pageSize);
+        boolean keyset = cursor != null || sortBy == null;
+
+        Comparator<BeerDTO> order = keyset ? KEYSET_ORDER : sortOrder(sortBy).thenComparing(BeerDTO::getId);
+        if (direction == Sort.Direction.DESC) {
+            order = order.reversed();
+        }
+
+        //sorted on each call only for the other sort fields, and for the few beers of a upc
+        Stream<BeerDTO> ordered;
+        if (keyset && (filter == null || !StringUtils.hasText(filter.getUpc()))) {
+            NavigableSet<BeerDTO> beers = direction == Sort.Direction.DESC ? byKeysetOrder.descendingSet() : byKeysetOrder;
+            if (cursor != null) {
+                beers = beers.tailSet(BeerDTO.builder().updateDate(cursor.getUpdateDate()).id(cursor.getId()).build(), false);
+            }
+            ordered = beers.stream()
+                    .filter(beer -> beerMap.get(beer.getId()) == beer && (filter == null || filter.matches(beer)));
+        } else {
+            List<BeerDTO> sorted = new ArrayList<>(candidates(filter));
+            sorted.sort(order);
+            ordered = sorted.stream();
+            if (cursor != null) {
+                BeerDTO probe = BeerDTO.builder().updateDate(cursor.getUpdateDate()).id(cursor.getId()).build();
+                Comparator<BeerDTO> cursorOrder = order;
+                ordered = ordered.filter(beer -> cursorOrder.compare(beer, probe) > 0);
+            }
+        }
+        if (cursor == null) {
+            ordered = ordered.skip((long) Paging.pageNumber(pageNumber, size) * size);
+        }
+
+        //one more than the page: is there a next one
+        List<BeerDTO> page = ordered.limit(size + 1L).map(BeerServiceImpl::copy).toList();
+        boolean hasNext = page.size() > size;
+        List<BeerDTO> content = hasNext ? page.subList(0, size) : page;
+
+        return BeerPageDTO.builder()
+                .content(content)
+                .pageNumber(cursor == null ? Paging.pageNumber(pageNumber, size) : null)
+                .pageSize(size)
+                .hasNext(hasNext)
+                .nextCursor(keyset && hasNext ? BeerCursor.of(content.get(content.size() - 1)).encode() : null)
+                .build();
+    }
+
+    //narrowest index first (upc, then style), the filter re-checks every field
+    private Collection<BeerDTO> candidates(BeerFilter filter) {
+        if (filter == null) {
+            return beerMap.values();
+        }
+        if (StringUtils.hasText(filter.getUpc())) {
+            return internalLookup(upcIndex.get(filter.getUpc()), filter::matches);
+        }
+        if (filter.getBeerStyle() != null) {
+            return internalLookup(styleIndex.get(filter.getBeerStyle()), filter::matches);
+        }
+        return beerMap.values().stream().filter(filter::matches).toList();
+    }
+
+    private static Comparator<BeerDTO> sortOrder(BeerSortField sortBy) {
+        return switch (sortBy) {
+            case BEER_NAME -> Comparator.comparing(BeerDTO::getBeerName, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case BEER_STYLE -> Comparator.comparing(BeerDTO::getBeerStyle, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case UPC -> Comparator.comparing(BeerDTO::getUpc, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case PRICE -> Comparator.comparing(BeerDTO::getPrice, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case QUANTITY_ON_HAND -> Comparator.comparing(BeerDTO::getQuantityOnHand, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case CREATED_DATE -> Comparator.comparing(BeerDTO::getCreatedDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+            case UPDATE_DATE -> Comparator.comparing(BeerDTO::getUpdateDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+        };
+    }
+
+    @Override
+    public void exportBeers(Consumer<BeerDTO> consumer) {
+        beerMap.values().forEach(beer -> consumer.accept(copy(beer)));
     }
 
 //    @Override
@@ -76,9 +204,14 @@ public class BeerServiceImpl implements BeerService {
     @Override
     public Optional<BeerDTO> getBeerById(UUID id) {
 
-        log.debug("Get Beer by Id - in services. Id: " + id.toString());
+        log.debug("Get Beer by Id - in services. Id: {}", id);
 
-        return Optional.of(beerMap.get(id));
+        return Optional.ofNullable(beerMap.get(id)).map(BeerServiceImpl::copy);
+    }
+
+    @Override
+    public Optional<Integer> getBeerVersion(UUID id) {
+        return Optional.ofNullable(beerMap.get(id)).map(BeerDTO::getVersion);
     }
 
     @Override
@@ -86,6 +219,7 @@ public class BeerServiceImpl implements BeerService {
         //we are mimicking what a persistent store would do; using lombok generated builder
         BeerDTO savedBeer = BeerDTO.builder()
                 .id(UUID.randomUUID())
+                .version(0)
                 .createdDate(LocalDateTime.now())
                 .updateDate(LocalDateTime.now())
                 .beerName(beer.getBeerName())
@@ -94,63 +228,250 @@ public class BeerServiceImpl implements BeerService {
                 .upc(beer.getUpc())
                 .price(beer.getPrice())
                 .build();
-        beerMap.put(savedBeer.getId(), savedBeer);
-        return savedBeer;
+        store(savedBeer);
+        return copy(savedBeer);
     }
 
     @Override
-    public Optional<BeerDTO> updateBeerById(UUID beerId, BeerDTO beer) {
-        BeerDTO existing = beerMap.get(beerId);
-        existing.setBeerName(beer.getBeerName());
-        existing.setPrice(beer.getPrice());
-        existing.setUpc(beer.getUpc());
-        existing.setQuantityOnHand(beer.getQuantityOnHand());
+    public List<BeerDTO> saveNewBeers(List<BeerDTO> beers) {
+        return beers.stream().map(this::saveNewBeer).toList();
+    }
 
-        beerMap.put(existing.getId(), existing);
+    @Override
+    public Optional<BeerDTO> updateBeerById(UUID beerId, BeerDTO beer) {
+        BeerDTO updated = replace(beerId, existing -> nextVersion(existing, beer.getVersion())
+                .beerName(beer.getBeerName())
+                .beerStyle(beer.getBeerStyle())
+                .price(beer.getPrice())
+                .upc(beer.getUpc())
+                .quantityOnHand(beer.getQuantityOnHand())
+                .build());
 
-        return Optional.of(existing);
+        return Optional.ofNullable(updated).map(BeerServiceImpl::copy);
     }
 
     @Override
-    public void deleteById(UUID beerId) {
-        beerMap.remove(beerId);
+    public boolean deleteById(UUID beerId) {
+        AtomicLong seq = new AtomicLong();
+        beerMap.computeIfPresent(beerId, (id, existing) -> {
+            unindex(existing);
+            seq.set(changeLog.deleted(id));
+            return null;
+        });
+        if (seq.get() == 0) {
+            return false;
+        }
+        changeLog.publish(seq.get());
+        return true;
     }
 
     // PATCH operation is pretty rare, most of the time we do not need it
     // and we use UPDATE instead
     @Override
-    public void patchBeerById(UUID beerId, BeerDTO beer) {
-        BeerDTO existing = beerMap.get(beerId);
+    public boolean patchBeerById(UUID beerId, BeerDTO beer) {
 
         // patching is about detecting what has changed
         // and update the existing object in the database
 
-        boolean isUpdated = false;
-        if (StringUtils.hasText(beer.getBeerName())){
-            existing.setBeerName(beer.getBeerName());
-            isUpdated = true;
+        return replace(beerId, existing -> {
+            BeerDTO.BeerDTOBuilder patched = nextVersion(existing, beer.getVersion());
+
+            boolean isUpdated = false;
+            if (StringUtils.hasText(beer.getBeerName())) {
+                patched.beerName(beer.getBeerName());
+                isUpdated = true;
+            }
+
+            if (beer.getBeerStyle() != null) {
+                patched.beerStyle(beer.getBeerStyle());
+                isUpdated = true;
+            }
+
+            if (beer.getPrice() != null) {
+                patched.price(beer.getPrice());
+                isUpdated = true;
+            }
+
+            if (beer.getQuantityOnHand() != null) {
+                patched.quantityOnHand(beer.getQuantityOnHand());
+                isUpdated = true;
+            }
+
+            if (StringUtils.hasText(beer.getUpc())) {
+                patched.upc(beer.getUpc());
+                isUpdated = true;
+            }
+
+            //nothing to change: keep the current version
+            return isUpdated ? patched.build() : existing;
+        }) != null;
+    }
+
+    @Override
+    public List<BatchItemResultDTO> updateBeers(List<BeerDTO> beers) {
+        return beers.stream().map(beer -> {
+            BatchItemResultDTO.BatchItemResultDTOBuilder result = BatchItemResultDTO.builder().id(beer.getId());
+            if (beer.getId() == null) {
+                return result.status(HttpStatus.BAD_REQUEST.value()).build();
+            }
+            try {
+                return updateBeerById(beer.getId(), beer)
+                        .map(updated -> result.status(HttpStatus.NO_CONTENT.value()).version(updated.getVersion()))
+                        .orElseGet(() -> result.status(HttpStatus.NOT_FOUND.value()))
+                        .build();
+            } catch (ObjectOptimisticLockingFailureException e) {
+                return result.status(HttpStatus.PRECONDITION_FAILED.value()).build();
+            }
+        }).toList();
+    }
+
+    @Override
+    public List<BatchItemResultDTO> deleteBeers(List<UUID> beerIds) {
+        return beerIds.stream().map(id -> BatchItemResultDTO.builder()
+                .id(id)
+                .status(id == null ? HttpStatus.BAD_REQUEST.value()
+                        : deleteById(id) ? HttpStatus.NO_CONTENT.value() : HttpStatus.NOT_FOUND.value())
+                .build()).toList();
+    }
+
+    @Override
+    public List<BatchItemResultDTO> adjustStock(List<StockAdjustmentDTO> adjustments) {
+        return adjustments.stream().map(adjustment -> {
+            BatchItemResultDTO.BatchItemResultDTOBuilder result = BatchItemResultDTO.builder().id(adjustment.getBeerId());
+            if (adjustment.getBeerId() == null || adjustment.getDelta() == null) {
+                return result.status(HttpStatus.BAD_REQUEST.value()).build();
+            }
+            AtomicBoolean applied = new AtomicBoolean();
+            BeerDTO stored = replace(adjustment.getBeerId(), existing -> {
+                int quantity = (existing.getQuantityOnHand() == null ? 0 : existing.getQuantityOnHand())
+                        + adjustment.getDelta();
+                if (quantity < 0) {
+                    return existing;
+                }
+                applied.set(true);
+                return nextVersion(existing, null).quantityOnHand(quantity).build();
+            });
+            HttpStatus status = stored == null ? HttpStatus.NOT_FOUND
+                    : applied.get() ? HttpStatus.NO_CONTENT : HttpStatus.CONFLICT;
+            return result.status(status.value()).build();
+        }).toList();
+    }
+
+    @Override
+    public ChangesDTO<BeerDTO> getChanges(Long since, Integer limit) {
+        long from = ChangeFeeds.since(since);
+        int size = Paging.pageSize(limit);
+        return ChangeFeeds.toChanges(changeLog.findChanges(from, size + 1), size, from,
+                ids -> ids.stream().map(beerMap::get).filter(Objects::nonNull).map(BeerServiceImpl::copy).toList(),
+                BeerDTO::getId);
+    }
+
+    @Override
+    public long getLatestChangeCursor() {
+        return changeLog.latestSeq();
+    }
+
+    //the change is numbered under the key's lock, and published once the map has the beer
+    private void store(BeerDTO beer) {
+        AtomicLong seq = new AtomicLong();
+        beerMap.compute(beer.getId(), (id, existing) -> {
+            unindex(existing);
+            index(beer);
+            seq.set(changeLog.changed(id));
+            return beer;
+        });
+        changeLog.publish(seq.get());
+    }
+
+    //atomically swaps the stored beer for a new version, null if there is no such beer
+    private BeerDTO replace(UUID beerId, UnaryOperator<BeerDTO> change) {
+        AtomicLong seq = new AtomicLong();
+        BeerDTO stored = beerMap.computeIfPresent(beerId, (id, existing) -> {
+            BeerDTO next = change.apply(existing);
+            if (next != existing) {
+                unindex(existing);
+                index(next);
+                seq.set(changeLog.changed(id));
+            }
+            return next;
+        });
+        if (seq.get() != 0) {
+            changeLog.publish(seq.get());
         }
+        return stored;
+    }
 
-        if (beer.getBeerStyle() != null) {
-            existing.setBeerStyle(beer.getBeerStyle());
-            isUpdated = true;
+    //expectedVersion, when given, must be the current one (same optimistic lock as the JPA service)
+    private static BeerDTO.BeerDTOBuilder nextVersion(BeerDTO existing, Integer expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(BeerDTO.class, existing.getId());
         }
+        int version = existing.getVersion() == null ? 0 : existing.getVersion();
+        return existing.toBuilder()
+                .version(version + 1)
+                .updateDate(LocalDateTime.now());
+    }
 
-        if (beer.getPrice() != null) {
-            existing.setPrice(beer.getPrice());
-            isUpdated = true;
+    private void index(BeerDTO beer) {
+        byKeysetOrder.add(beer);
+        if (beer.getBeerStyle() != null) {
+            addTo(styleIndex, beer.getBeerStyle(), beer.getId());
         }
+        if (beer.getUpc() != null) {
+            addTo(upcIndex, beer.getUpc(), beer.getId());
+        }
+    }
 
-        if (beer.getQuantityOnHand() != null){
-            existing.setQuantityOnHand(beer.getQuantityOnHand());
-            isUpdated = true;
+    private void unindex(BeerDTO beer) {
+        if (beer == null) {
+            return;
+        }
+        byKeysetOrder.remove(beer);
+        if (beer.getBeerStyle() != null) {
+            removeFrom(styleIndex, beer.getBeerStyle(), beer.getId());
+        }
+        if (beer.getUpc() != null) {
+            removeFrom(upcIndex, beer.getUpc(), beer.getId());
         }
+    }
+
+    //both under the lock of the key: an id is never added to a set that was just dropped as empty
+    private static <K> void addTo(ConcurrentMap<K, Set<UUID>> index, K key, UUID id) {
+        index.compute(key, (k, ids) -> {
+            Set<UUID> set = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+            set.add(id);
+            return set;
+        });
+    }
+
+    private static <K> void removeFrom(ConcurrentMap<K, Set<UUID>> index, K key, UUID id) {
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
 
-        if (StringUtils.hasText(beer.getUpc())) {
-            existing.setUpc(beer.getUpc());
-            isUpdated = true;
+    //distinct upc values indexed, for tests
+    int indexedUpcCount() {
+        return upcIndex.size();
+    }
+
+    private List<BeerDTO> lookup(Set<UUID> ids, Predicate<BeerDTO> stillMatches) {
+        return internalLookup(ids, stillMatches).stream().map(BeerServiceImpl::copy).toList();
+    }
+
+    //stored instances, not copies: only for reads that copy what they hand out
+    private List<BeerDTO> internalLookup(Set<UUID> ids, Predicate<BeerDTO> stillMatches) {
+        if (ids == null) {
+            return List.of();
         }
+        return ids.stream()
+                .map(beerMap::get)
+                .filter(beer -> beer != null && stillMatches.test(beer))
+                .toList();
+    }
 
-        if (isUpdated) existing.setUpdateDate(LocalDateTime.now());
+    private static BeerDTO copy(BeerDTO beer) {
+        return beer.toBuilder().build();
     }
 }
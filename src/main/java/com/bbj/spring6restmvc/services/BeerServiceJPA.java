@@ -1,37 +1,138 @@
 package com.bbj.spring6restmvc.services;
 
+import com.bbj.spring6restmvc.config.MetricsConfig;
+import com.bbj.spring6restmvc.entities.Beer;
 import com.bbj.spring6restmvc.mappers.BeerMapper;
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerCursor;
 import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerSortField;
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
 import com.bbj.spring6restmvc.repositories.BeerRepository;
+import com.bbj.spring6restmvc.repositories.BeerSpecifications;
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository;
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository.Feed;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+@Timed(MetricsConfig.SERVICE_TIMER)
 @Service
 @Primary //if spring sees several impl, it will use this one
 @RequiredArgsConstructor
 public class BeerServiceJPA implements BeerService {
     private final BeerRepository beerRepository;
     private final BeerMapper beerMapper;
+    private final EntityManager entityManager;
+    private final BeerDtoCache beerDtoCache;
+    private final PlatformTransactionManager transactionManager;
+    private final BeerStockBuffer stockBuffer;
+    private final ChangeFeedRepository changeFeedRepository;
 
+    //flush/clear every JDBC batch so the persistence context never holds more than one chunk
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize = 50;
+
+    //bulk updates / deletes commit every chunk: a huge list never holds its locks in one long transaction
+    @Value("${beer.bulk.chunk-size:1000}")
+    private int bulkChunkSize = 1000;
+
+    //rows are read straight into DTOs, see BeerRepositoryCustom.findDtoSlice()
     @Override
-    public List<BeerDTO> listBeers() {
-        return beerRepository.findAll()
-                .stream()
-                .map(beerMapper::beerToBeerDto)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public BeerPageDTO listBeers(BeerFilter filter, BeerCursor cursor, Integer pageNumber, Integer pageSize,
+                                 BeerSortField sortBy, Sort.Direction direction) {
+        Sort.Direction dir = direction == null ? Sort.Direction.ASC : direction;
+        int size = Paging.pageSize(pageSize);
+
+        //keyset mode: a cursor was given, or no explicit sort => (updateDate, id) order
+        boolean keyset = cursor != null || sortBy == null;
+
+        Sort sort = keyset
+                ? Sort.by(dir, "updateDate", "id")
+                : Sort.by(dir, sortBy.getProperty()).and(Sort.by(dir, "id")); //id keeps the order stable
+
+        Specification<Beer> spec = BeerSpecifications.matching(filter);
+        PageRequest pageRequest;
+        if (cursor != null) {
+            spec = Specification.where(spec).and(BeerSpecifications.after(cursor, dir));
+            pageRequest = PageRequest.of(0, size, sort);
+        } else {
+            pageRequest = PageRequest.of(Paging.pageNumber(pageNumber, size), size, sort);
+        }
+
+        Slice<BeerDTO> slice = beerRepository.findDtoSlice(spec, pageRequest);
+        List<BeerDTO> content = stockBuffer.withPending(slice.getContent());
+
+        return BeerPageDTO.builder()
+                .content(content)
+                .pageNumber(cursor == null ? pageRequest.getPageNumber() : null)
+                .pageSize(size)
+                .hasNext(slice.hasNext())
+                .nextCursor(keyset && slice.hasNext()
+                        ? BeerCursor.of(content.get(content.size() - 1)).encode()
+                        : null)
+                .build();
+    }
+
+    //the stream needs an open transaction (and connection) for as long as it is read
+    @Override
+    @Transactional(readOnly = true)
+    public void exportBeers(Consumer<BeerDTO> consumer) {
+        try (Stream<Beer> beers = beerRepository.streamAll()) {
+            beers.forEach(beer -> {
+                consumer.accept(stockBuffer.withPending(beerMapper.beerToBeerDto(beer)));
+                //otherwise the persistence context keeps every row read so far
+                entityManager.detach(beer);
+            });
+        }
     }
 
     @Override
     public Optional<BeerDTO> getBeerById(UUID id) {
-        return Optional.ofNullable(beerMapper.beerToBeerDto(beerRepository.findById(id)
-                .orElse(null)));
+        //hot beers are served from memory, only misses reach the db
+        //the stock deltas not written yet are added on the way out, see BeerStockBuffer
+        return beerDtoCache.get(id, beerRepository::findBeerDtoById).map(stockBuffer::withPending);
+    }
+
+    @Override
+    public Optional<Integer> getBeerVersion(UUID id) {
+        //a cached DTO carries the last committed version, no need to ask the db
+        Optional<BeerDTO> cached = beerDtoCache.getIfPresent(id);
+        if (cached.isPresent()) {
+            return cached.map(BeerDTO::getVersion);
+        }
+        return beerRepository.findVersionById(id);
     }
 
     @Override
@@ -40,44 +141,267 @@ public class BeerServiceJPA implements BeerService {
     }
 
     @Override
+    @Transactional
+    public List<BeerDTO> saveNewBeers(List<BeerDTO> beers) {
+        List<BeerDTO> saved = new ArrayList<>(beers.size());
+        int chunkSize = Math.max(batchSize, 1); //batch_size=0 means batching disabled
+
+        for (int from = 0; from < beers.size(); from += chunkSize) {
+            List<Beer> chunk = beers.subList(from, Math.min(from + chunkSize, beers.size()))
+                    .stream()
+                    .map(beerMapper::beerDtoToBeer)
+                    .toList();
+            //a client supplied id/version would turn persist into merge (one select per row)
+            chunk.forEach(beer -> {
+                beer.setId(null);
+                beer.setVersion(null);
+            });
+
+            beerRepository.saveAll(chunk);
+            entityManager.flush(); //one batched INSERT per chunk
+            chunk.forEach(beer -> saved.add(beerMapper.beerToBeerDto(beer)));
+            entityManager.clear();
+        }
+        return saved;
+    }
+
+    /**
+     * One conditional UPDATE, no select first.
+     * beer.version, when set, is the version the client last saw: if the row moved on
+     * since, nothing is written and an OptimisticLockingFailureException is thrown.
+     */
+    @Override
+    @Transactional
     public Optional<BeerDTO> updateBeerById(UUID beerId, BeerDTO beer) {
+        Integer expectedVersion = beer.getVersion();
+
+        int updated = beerRepository.updateBeer(beerId, expectedVersion, beer.getBeerName(),
+                beer.getBeerStyle(), beer.getUpc(), beer.getQuantityOnHand(), beer.getPrice(),
+                LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+
+        if (updated == 0) {
+            return notUpdated(beerId, expectedVersion);
+        }
+        beerDtoCache.evict(beerId);
+        stockBuffer.written(beerId);
+
+        //the new version is only known when we said which one we were updating
+        return Optional.of(beer.toBuilder()
+                .id(beerId)
+                .version(expectedVersion == null ? null : expectedVersion + 1)
+                .build());
+    }
+
+    //one DELETE, its row count tells if the beer was there (and if it needs a tombstone)
+    @Override
+    @Transactional
+    public boolean deleteById(UUID beerId) {
+        int deleted = beerRepository.deleteBeerById(beerId);
+        if (deleted > 0) {
+            changeFeedRepository.insertTombstones(Feed.BEER, List.of(beerId), LocalDateTime.now());
+        }
+        beerDtoCache.evict(beerId);
+        stockBuffer.written(beerId);
+        return deleted > 0;
+    }
 
-        /* version not returning anything
-        		@Override
-                public void updateBeerById(UUID beerId, BeerDTO beer) {
-                    beerRepository.findById(beerId).ifPresent(foundBeer -> {
-                        foundBeer.setBeerName(beer.getBeerName());
-                        foundBeer.setBeerStyle(beer.getBeerStyle());
-                        foundBeer.setUpc(beer.getUpc());
-                        foundBeer.setPrice(beer.getPrice());
-                        beerRepository.save(foundBeer);
-                    });
+    //only the non-null fields are written, in one UPDATE, see BeerRepositoryImpl.patchBeer()
+    @Override
+    @Transactional
+    public boolean patchBeerById(UUID beerId, BeerDTO beer) {
+        Beer changes = beerMapper.beerDtoToBeer(beer);
+        //blank texts mean "not patched", as for BeerServiceImpl
+        if (!StringUtils.hasText(changes.getBeerName())) changes.setBeerName(null);
+        if (!StringUtils.hasText(changes.getUpc())) changes.setUpc(null);
+
+        int updated = beerRepository.patchBeer(beerId, beer.getVersion(), changes);
+
+        if (updated == 0) {
+            notUpdated(beerId, beer.getVersion()); //throws on a stale version
+            return false;
+        }
+        beerDtoCache.evict(beerId);
+        stockBuffer.written(beerId);
+        return true;
+    }
+
+    /**
+     * Chunks of beer.bulk.chunk-size beers, one transaction each, sent as JDBC batches of UPDATEs.
+     * Beers are updated in id order, so concurrent bulk updates lock rows in the same order
+     * (no deadlock); results still come back in input order.
+     * Beers that updated nothing are told apart (404 / 412) by one IN query per chunk.
+     */
+    @Override
+    public List<BatchItemResultDTO> updateBeers(List<BeerDTO> beers) {
+        BatchItemResultDTO[] results = new BatchItemResultDTO[beers.size()];
+        List<Integer> order = new ArrayList<>(beers.size());
+        for (int i = 0; i < beers.size(); i++) {
+            if (beers.get(i).getId() == null) {
+                results[i] = BatchItemResultDTO.builder().status(HttpStatus.BAD_REQUEST.value()).build();
+            } else {
+                order.add(i);
+            }
+        }
+        order.sort(Comparator.comparing(i -> beers.get(i).getId()));
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime updateDate = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        for (List<Integer> chunk : chunks(order)) {
+            List<BeerDTO> rows = chunk.stream().map(beers::get).toList();
+            transaction.executeWithoutResult(status -> {
+                int[] updated = beerRepository.updateBeers(rows, updateDate, batchSize);
+
+                List<UUID> missed = new ArrayList<>();
+                for (int k = 0; k < updated.length; k++) {
+                    if (updated[k] == 0) missed.add(rows.get(k).getId());
+                }
+                Set<UUID> existing = missed.isEmpty() ? Set.of() : new HashSet<>(beerRepository.findExistingIds(missed));
+
+                for (int k = 0; k < rows.size(); k++) {
+                    BeerDTO beer = rows.get(k);
+                    BatchItemResultDTO.BatchItemResultDTOBuilder result = BatchItemResultDTO.builder().id(beer.getId());
+                    if (updated[k] > 0) {
+                        result.status(HttpStatus.NO_CONTENT.value())
+                                .version(beer.getVersion() == null ? null : beer.getVersion() + 1);
+                    } else if (beer.getVersion() != null && existing.contains(beer.getId())) {
+                        result.status(HttpStatus.PRECONDITION_FAILED.value());
+                    } else {
+                        result.status(HttpStatus.NOT_FOUND.value());
+                    }
+                    results[chunk.get(k)] = result.build();
                 }
-         */
+            });
+            rows.forEach(beer -> {
+                beerDtoCache.evict(beer.getId());
+                stockBuffer.written(beer.getId());
+            });
+        }
+        return Arrays.asList(results);
+    }
 
-        AtomicReference<Optional<BeerDTO>> atomicReference = new AtomicReference<>();
+    /**
+     * Chunks of beer.bulk.chunk-size ids, one transaction each:
+     * one IN query to know which beers are there, then one DELETE ... IN for them
+     * and one batch of tombstones.
+     */
+    @Override
+    public List<BatchItemResultDTO> deleteBeers(List<UUID> beerIds) {
+        Set<UUID> deleted = new HashSet<>();
+        List<UUID> ids = beerIds.stream().filter(Objects::nonNull).distinct().toList();
 
-        beerRepository.findById(beerId).ifPresentOrElse(foundBeer -> {
-            foundBeer.setBeerName(beer.getBeerName());
-            foundBeer.setBeerStyle(beer.getBeerStyle());
-            foundBeer.setUpc(beer.getUpc());
-            foundBeer.setPrice(beer.getPrice());
-            atomicReference.set(Optional.of(beerMapper
-                .beerToBeerDto(beerRepository.save(foundBeer))));
-        }, () -> {
-            atomicReference.set(Optional.empty());
-        });
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (List<UUID> chunk : chunks(ids)) {
+            transaction.executeWithoutResult(status -> {
+                List<UUID> existing = beerRepository.findExistingIds(chunk);
+                if (!existing.isEmpty()) {
+                    beerRepository.deleteAllByIdInBatch(existing);
+                    changeFeedRepository.insertTombstones(Feed.BEER, existing, LocalDateTime.now());
+                }
+                deleted.addAll(existing);
+            });
+            chunk.forEach(beerDtoCache::evict);
+            chunk.forEach(stockBuffer::written);
+        }
 
-        return atomicReference.get();
+        return beerIds.stream().map(id -> BatchItemResultDTO.builder()
+                .id(id)
+                .status(id == null ? HttpStatus.BAD_REQUEST.value()
+                        : deleted.contains(id) ? HttpStatus.NO_CONTENT.value() : HttpStatus.NOT_FOUND.value())
+                .build()).toList();
     }
 
+    /**
+     * Same chunking as updateBeers(), but each adjustment is one guarded UPDATE
+     * (quantity_on_hand + delta >= 0), see BeerRepositoryImpl.ADJUST_STOCK: concurrent orders
+     * of the same beer queue on its row lock for a moment instead of failing on its version.
+     * Adjustments that updated nothing are told apart (404 / 409) by one IN query per chunk.
+     * With beer.stock.write-behind.enabled they only go to BeerStockBuffer, written at its next flush.
+     */
     @Override
-    public void deleteById(UUID beerId) {
+    public List<BatchItemResultDTO> adjustStock(List<StockAdjustmentDTO> adjustments) {
+        if (stockBuffer.isEnabled()) {
+            return adjustments.stream().map(adjustment -> BatchItemResultDTO.builder()
+                    .id(adjustment.getBeerId())
+                    .status(adjustment.getBeerId() == null || adjustment.getDelta() == null
+                            ? HttpStatus.BAD_REQUEST.value()
+                            : stockBuffer.adjust(adjustment.getBeerId(), adjustment.getDelta()).value())
+                    .build()).toList();
+        }
+
+        BatchItemResultDTO[] results = new BatchItemResultDTO[adjustments.size()];
+        List<Integer> order = new ArrayList<>(adjustments.size());
+        for (int i = 0; i < adjustments.size(); i++) {
+            StockAdjustmentDTO adjustment = adjustments.get(i);
+            if (adjustment.getBeerId() == null || adjustment.getDelta() == null) {
+                results[i] = BatchItemResultDTO.builder()
+                        .id(adjustment.getBeerId())
+                        .status(HttpStatus.BAD_REQUEST.value())
+                        .build();
+            } else {
+                order.add(i);
+            }
+        }
+        //id order: no deadlock between concurrent multi-beer adjustments
+        order.sort(Comparator.comparing(i -> adjustments.get(i).getBeerId()));
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        LocalDateTime updateDate = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        for (List<Integer> chunk : chunks(order)) {
+            List<StockAdjustmentDTO> rows = chunk.stream().map(adjustments::get).toList();
+            transaction.executeWithoutResult(status -> {
+                int[] updated = beerRepository.adjustStock(rows, updateDate, batchSize);
+
+                List<UUID> missed = new ArrayList<>();
+                for (int k = 0; k < updated.length; k++) {
+                    if (updated[k] == 0) missed.add(rows.get(k).getBeerId());
+                }
+                Set<UUID> existing = missed.isEmpty() ? Set.of() : new HashSet<>(beerRepository.findExistingIds(missed));
+
+                for (int k = 0; k < rows.size(); k++) {
+                    UUID beerId = rows.get(k).getBeerId();
+                    HttpStatus result = updated[k] > 0 ? HttpStatus.NO_CONTENT
+                            : existing.contains(beerId) ? HttpStatus.CONFLICT : HttpStatus.NOT_FOUND;
+                    results[chunk.get(k)] = BatchItemResultDTO.builder().id(beerId).status(result.value()).build();
+                }
+            });
+            rows.forEach(adjustment -> beerDtoCache.evict(adjustment.getBeerId()));
+        }
+        return Arrays.asList(results);
+    }
 
+    /**
+     * One query over beer and beer_tombstone for the changes (see ChangeFeedRepository.findChanges()),
+     * then the changed beers read by id, as they are now, with their pending stock.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ChangesDTO<BeerDTO> getChanges(Long since, Integer limit) {
+        long from = ChangeFeeds.since(since);
+        int size = Paging.pageSize(limit);
+        return ChangeFeeds.toChanges(changeFeedRepository.findChanges(Feed.BEER, from, size + 1), size, from,
+                ids -> stockBuffer.withPending(beerRepository.findBeerDtosByIds(ids)), BeerDTO::getId);
     }
 
     @Override
-    public void patchBeerById(UUID beerId, BeerDTO beer) {
+    @Transactional(readOnly = true)
+    public long getLatestChangeCursor() {
+        return changeFeedRepository.findLatestSeq(Feed.BEER);
+    }
+
+    private <T> List<List<T>> chunks(List<T> items) {
+        int chunkSize = Math.max(bulkChunkSize, 1);
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            chunks.add(items.subList(from, Math.min(from + chunkSize, items.size())));
+        }
+        return chunks;
+    }
 
+    //0 rows updated: either there is no such beer, or it is not at the expected version anymore
+    private Optional<BeerDTO> notUpdated(UUID beerId, Integer expectedVersion) {
+        if (expectedVersion != null && beerRepository.existsById(beerId)) {
+            throw new ObjectOptimisticLockingFailureException(Beer.class, beerId);
+        }
+        return Optional.empty();
     }
 }
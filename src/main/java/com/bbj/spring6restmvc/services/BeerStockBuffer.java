@@ -0,0 +1,284 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
+import com.bbj.spring6restmvc.repositories.BeerRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind of the stock adjustments (beer.stock.write-behind.enabled=true).
+ * An accepted delta only goes to an in-memory counter of its beer; every flush-interval the db
+ * gets the sum of each beer's deltas, as one batch of UPDATEs. A thousand orders of a hot beer
+ * between two flushes cost one db write instead of a thousand.
+ *
+ * - never below 0: the available stock of a beer is kept in memory (read from the db on its
+ *   first adjustment), a delta taking it below 0 is refused (409). Checking it, taking it and adding
+ *   the delta to pending is one step under the beer's own lock, as is reading it again from the db
+ * - pending deltas are summed in a LongAdder per beer, striped so the order threads
+ *   do not all hit one counter; the flush takes them with sumThenReset(), which loses none
+ * - reads add the pending deltas to the persisted stock, see withPending()
+ * - durability bound: a crash loses at most flush-interval of deltas, and never more than
+ *   max-pending of them, reaching it starts a flush right away. Shutting down flushes everything.
+ *
+ * The version (and ETag) of a beer moves at the flush, not with every delta.
+ * Other writes of a beer (PUT, PATCH, DELETE, bulk) make its stock be read again from the db
+ * at its next adjustment; deltas still pending then are applied on top of what they wrote.
+ * That read waits for a running flush to commit (flushLock), else the deltas it took from
+ * pending would be in neither the db nor pending, and could be taken a second time.
+ * The locks are ReentrantLocks and the db is never read inside the map's compute: the callers are
+ * request threads, virtual ones by default, which a monitor held across a db call would pin.
+ * The flush UPDATE is still guarded (>= 0): a delta it refuses is dropped and logged.
+ */
+@Slf4j
+@Component
+public class BeerStockBuffer {
+
+    private final BeerRepository beerRepository;
+    private final BeerDtoCache beerDtoCache;
+    private final TransactionTemplate transaction;
+    private final boolean enabled;
+    private final long maxPending;
+    private final int batchSize;
+
+    private final ConcurrentMap<UUID, Stock> stocks = new ConcurrentHashMap<>();
+    //deltas accepted since the last flush, only used to trigger an early one
+    private final LongAdder pendingCount = new LongAdder();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    //one flush at a time, and no stock read again from the db while one is committing
+    private final Lock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+
+    public BeerStockBuffer(BeerRepository beerRepository,
+                           BeerDtoCache beerDtoCache,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${beer.stock.write-behind.enabled:false}") boolean enabled,
+                           @Value("${beer.stock.write-behind.flush-interval:100ms}") Duration flushInterval,
+                           @Value("${beer.stock.write-behind.max-pending:10000}") long maxPending,
+                           @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.beerRepository = beerRepository;
+        this.beerDtoCache = beerDtoCache;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+
+        if (enabled) {
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "beer-stock-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly,
+                    flushInterval.toNanos(), flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 204 accepted (written at the next flush), 404 no such beer, 409 not enough stock.
+     */
+    public HttpStatus adjust(UUID beerId, int delta) {
+        //a new one is stale: read from the db below, outside of the map's compute
+        Stock stock = stocks.computeIfAbsent(beerId, id -> new Stock());
+        stock.lock.lock();
+        try {
+            if (stock.stale) {
+                stock.refresh(beerId);
+            }
+            if (stock.gone) {
+                return HttpStatus.NOT_FOUND;
+            }
+            if (stock.available + delta < 0) {
+                return HttpStatus.CONFLICT;
+            }
+            stock.available += delta;
+            stock.pending.add(delta);
+        } finally {
+            stock.lock.unlock();
+        }
+
+        pendingCount.increment();
+        if (pendingCount.sum() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+        return HttpStatus.NO_CONTENT;
+    }
+
+    /**
+     * The beer with its deltas not flushed yet added to its stock.
+     * While a flush is committing, its deltas are in neither: the stock read can lag by one flush.
+     */
+    public BeerDTO withPending(BeerDTO beer) {
+        Stock stock = enabled ? stocks.get(beer.getId()) : null;
+        long pending = stock == null ? 0 : stock.pending.sum();
+        if (pending == 0) {
+            return beer;
+        }
+        int quantity = beer.getQuantityOnHand() == null ? 0 : beer.getQuantityOnHand();
+        return beer.toBuilder().quantityOnHand(Math.toIntExact(quantity + pending)).build();
+    }
+
+    public List<BeerDTO> withPending(List<BeerDTO> beers) {
+        return enabled && !stocks.isEmpty() ? beers.stream().map(this::withPending).toList() : beers;
+    }
+
+    /**
+     * The beer was written by something else than adjust(): its stock is read again
+     * at its next adjustment, once the current transaction has committed.
+     */
+    public void written(UUID beerId) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markStale(beerId);
+                }
+            });
+        } else {
+            markStale(beerId);
+        }
+    }
+
+    private void markStale(UUID beerId) {
+        Stock stock = stocks.get(beerId);
+        if (stock != null) {
+            stock.stale = true;
+        }
+    }
+
+    /**
+     * Writes the pending deltas of every beer, one guarded UPDATE per beer in one transaction.
+     * On failure the deltas are put back for the next flush. Returns the number of beers written.
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            return flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private int flushLocked() {
+        flushRequested.set(false);
+        pendingCount.reset();
+
+        List<StockAdjustmentDTO> deltas = new ArrayList<>();
+        stocks.forEach((beerId, stock) -> {
+            long delta = stock.pending.sumThenReset();
+            if (delta != 0) {
+                deltas.add(StockAdjustmentDTO.builder().beerId(beerId).delta(Math.toIntExact(delta)).build());
+            }
+        });
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+        //same lock order as the other bulk writes
+        deltas.sort(Comparator.comparing(StockAdjustmentDTO::getBeerId));
+
+        int[] updated;
+        try {
+            LocalDateTime updateDate = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            updated = transaction.execute(status -> beerRepository.adjustStock(deltas, updateDate, batchSize));
+        } catch (RuntimeException e) {
+            deltas.forEach(delta -> Optional.ofNullable(stocks.get(delta.getBeerId()))
+                    .ifPresent(stock -> stock.pending.add(delta.getDelta())));
+            throw e;
+        }
+
+        int written = 0;
+        for (int k = 0; k < deltas.size(); k++) {
+            UUID beerId = deltas.get(k).getBeerId();
+            if (updated[k] == 0) {
+                //deleted meanwhile (its deltas go with it), or a PUT/PATCH lowered the stock under them:
+                //read again at the next adjustment
+                log.warn("Stock delta {} of beer {} not written, no such beer or not enough stock",
+                        deltas.get(k).getDelta(), beerId);
+                markStale(beerId);
+            } else {
+                written++;
+            }
+            beerDtoCache.evict(beerId);
+        }
+        return written;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Stock flush failed, deltas kept for the next one", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flushQuietly();
+        }
+    }
+
+    private class Stock {
+        //what the db has plus the pending deltas: what can still be taken (guarded by lock)
+        long available;
+        //the beer is no more, this Stock is out of the map (guarded by lock)
+        boolean gone;
+        final LongAdder pending = new LongAdder();
+        final Lock lock = new ReentrantLock();
+        //not read yet, or written by something else since
+        volatile boolean stale = true;
+
+        //re-reads the stock with lock held. Under flushLock too: what a flush took from pending
+        //is then either committed or put back
+        void refresh(UUID beerId) {
+            flushLock.lock();
+            try {
+                stale = false;
+                Optional<Integer> persisted = beerRepository.findQuantityOnHandById(beerId);
+                if (persisted.isPresent()) {
+                    available = persisted.get() + pending.sum();
+                } else {
+                    gone = true;
+                    stocks.remove(beerId, this);
+                }
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+}
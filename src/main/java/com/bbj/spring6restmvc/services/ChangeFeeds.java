@@ -0,0 +1,56 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository.Change;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a run of the change feed into a ChangesDTO, shared by the service implementations.
+ */
+final class ChangeFeeds {
+
+    private ChangeFeeds() {
+    }
+
+    static long since(Long since) {
+        return since == null || since < 0 ? 0 : since;
+    }
+
+    /**
+     * changes holds at most limit + 1 entries, the extra one only tells there are more.
+     * load reads the changed items by id, as they are now: one deleted meanwhile is reported deleted.
+     */
+    static <T> ChangesDTO<T> toChanges(List<Change> changes, int limit, long since,
+                                       Function<List<UUID>, List<T>> load, Function<T, UUID> idOf) {
+        boolean hasMore = changes.size() > limit;
+        List<Change> page = hasMore ? changes.subList(0, limit) : changes;
+
+        List<UUID> changedIds = page.stream().filter(change -> !change.deleted()).map(Change::id).toList();
+        Map<UUID, T> current = changedIds.isEmpty() ? Map.of()
+                : load.apply(changedIds).stream().collect(Collectors.toMap(idOf, Function.identity()));
+
+        List<T> changed = new ArrayList<>();
+        List<UUID> deleted = new ArrayList<>();
+        for (Change change : page) {
+            T item = change.deleted() ? null : current.get(change.id());
+            if (item != null) {
+                changed.add(item);
+            } else {
+                deleted.add(change.id());
+            }
+        }
+
+        return ChangesDTO.<T>builder()
+                .changed(changed)
+                .deleted(deleted)
+                .cursor(page.isEmpty() ? since : page.get(page.size() - 1).seq())
+                .hasMore(hasMore)
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.config.ReadWriteRoutingDataSource;
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository;
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository.Feed;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gives the rows written since its last pass (change_seq null, see Beer.changeSeq) and the new
+ * tombstones their place in the change feed, every bbj.changes.sequence-interval.
+ *
+ * Why a cursor never skips a change: numbers are only drawn by this one thread, chunk after chunk,
+ * each chunk committed before the next one draws. So the numbers visible to a reader always
+ * form a prefix, nothing below a visible number can still show up later.
+ * That holds for ONE sequencer per database: with several instances on the same db, only one
+ * may have bbj.changes.sequencer.enabled=true.
+ *
+ * A change is in the feed at most sequence-interval after its commit.
+ * Its transactions do not keep reads off the read replicas (ReadWriteRoutingDataSource.UNTRACKED_WRITE).
+ */
+@Slf4j
+@Component
+public class ChangeSequencer {
+
+    private final ChangeFeedRepository changeFeedRepository;
+    private final TransactionTemplate transaction;
+    private final int chunkSize;
+    private final ScheduledExecutorService sequencer;
+
+    public ChangeSequencer(ChangeFeedRepository changeFeedRepository,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${bbj.changes.sequencer.enabled:true}") boolean enabled,
+                           @Value("${bbj.changes.sequence-interval:1s}") Duration interval,
+                           @Value("${bbj.changes.chunk-size:10000}") int chunkSize) {
+        this.changeFeedRepository = changeFeedRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.transaction.setName(ReadWriteRoutingDataSource.UNTRACKED_WRITE);
+        this.chunkSize = Math.max(chunkSize, 1);
+
+        changeFeedRepository.createSequence();
+
+        if (enabled) {
+            sequencer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "change-sequencer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sequencer.scheduleWithFixedDelay(this::sequenceQuietly,
+                    interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        } else {
+            sequencer = null;
+        }
+    }
+
+    /**
+     * Numbers every row waiting for it, chunk-size rows per transaction. Returns how many.
+     */
+    public synchronized long sequence() {
+        long numbered = 0;
+        for (Feed feed : Feed.values()) {
+            numbered += sequence(feed, false);
+            numbered += sequence(feed, true);
+        }
+        return numbered;
+    }
+
+    private long sequence(Feed feed, boolean tombstones) {
+        long numbered = 0;
+        int chunk;
+        do {
+            chunk = transaction.execute(status -> changeFeedRepository.assignSeqs(feed, tombstones, chunkSize));
+            numbered += chunk;
+        } while (chunk == chunkSize);
+        return numbered;
+    }
+
+    private void sequenceQuietly() {
+        try {
+            sequence();
+        } catch (RuntimeException e) {
+            log.error("Change sequencing failed, retried at the next pass", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (sequencer != null) {
+            sequencer.shutdown();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bbj.spring6restmvc.services;
 
+import com.bbj.spring6restmvc.model.ChangesDTO;
 import com.bbj.spring6restmvc.model.CustomerDTO;
 
 import java.util.List;
@@ -13,6 +14,11 @@ public interface CustomerService {
 
     Optional<CustomerDTO> getCustomerById(UUID uuid);
 
+    /**
+     * Current @Version of the customer without loading it, for ETag checks.
+     */
+    Optional<Integer> getCustomerVersion(UUID uuid);
+
     List<CustomerDTO> getAllCustomers();
 
     CustomerDTO saveNewCustomer(CustomerDTO customer);
@@ -22,4 +28,9 @@ public interface CustomerService {
     void deleteCustomerById(UUID customerId);
 
     void patchCustomerById(UUID customerId, CustomerDTO customer);
+
+    /**
+     * Customers created, updated or deleted after the since cursor, same as BeerService.getChanges().
+     */
+    ChangesDTO<CustomerDTO> getChanges(Long since, Integer limit);
 }
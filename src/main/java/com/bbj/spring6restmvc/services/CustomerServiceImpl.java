@@ -1,20 +1,31 @@
 package com.bbj.spring6restmvc.services;
 
+import com.bbj.spring6restmvc.config.MetricsConfig;
+import com.bbj.spring6restmvc.model.ChangesDTO;
 import com.bbj.spring6restmvc.model.CustomerDTO;
 
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
 
 /**
  * Created by jt, Spring Framework Guru.
+ *
+ * A stored customer is never changed: a write swaps in a copy with the next version, so the
+ * version (and ETag) moves with every change and a customer handed out stays as it was read.
  */
+@Timed(MetricsConfig.SERVICE_TIMER)
 @Service
 public class CustomerServiceImpl implements CustomerService {
 
     private Map<UUID, CustomerDTO> customerMap;
+    private final InMemoryChangeLog changeLog = new InMemoryChangeLog();
 
     public CustomerServiceImpl() {
         CustomerDTO customer1 = CustomerDTO.builder()
@@ -41,30 +52,30 @@ public class CustomerServiceImpl implements CustomerService {
                 .updateDate(LocalDateTime.now())
                 .build();
 
-        customerMap = new HashMap<>();
+        customerMap = new ConcurrentHashMap<>();
         customerMap.put(customer1.getId(), customer1);
         customerMap.put(customer2.getId(), customer2);
         customerMap.put(customer3.getId(), customer3);
+        customerMap.keySet().forEach(id -> changeLog.publish(changeLog.changed(id)));
     }
 
     @Override
     public void patchCustomerById(UUID customerId, CustomerDTO customer) {
-        CustomerDTO existing = customerMap.get(customerId);
-
-        if (StringUtils.hasText(customer.getName())) {
-            existing.setName(customer.getName());
-        }
+        replace(customerId, existing -> StringUtils.hasText(customer.getName())
+                ? nextVersion(existing).name(customer.getName()).build()
+                : existing);
     }
 
     @Override
     public void deleteCustomerById(UUID customerId) {
-        customerMap.remove(customerId);
+        if (customerMap.remove(customerId) != null) {
+            changeLog.publish(changeLog.deleted(customerId));
+        }
     }
 
     @Override
     public void updateCustomerById(UUID customerId, CustomerDTO customer) {
-        CustomerDTO existing = customerMap.get(customerId);
-        existing.setName(customer.getName());
+        replace(customerId, existing -> nextVersion(existing).name(customer.getName()).build());
     }
 
     @Override
@@ -79,17 +90,54 @@ public class CustomerServiceImpl implements CustomerService {
                 .build();
 
         customerMap.put(savedCustomer.getId(), savedCustomer);
+        changeLog.publish(changeLog.changed(savedCustomer.getId()));
 
         return savedCustomer;
     }
 
     @Override
     public Optional<CustomerDTO> getCustomerById(UUID uuid) {
-        return Optional.of(customerMap.get(uuid));
+        return Optional.ofNullable(customerMap.get(uuid));
+    }
+
+    @Override
+    public Optional<Integer> getCustomerVersion(UUID uuid) {
+        return Optional.ofNullable(customerMap.get(uuid)).map(CustomerDTO::getVersion);
     }
 
     @Override
     public List<CustomerDTO> getAllCustomers() {
         return new ArrayList<>(customerMap.values());
     }
+
+    //atomically swaps the stored customer for a new version, as BeerServiceImpl does
+    private void replace(UUID customerId, UnaryOperator<CustomerDTO> change) {
+        AtomicLong seq = new AtomicLong();
+        customerMap.computeIfPresent(customerId, (id, existing) -> {
+            CustomerDTO next = change.apply(existing);
+            if (next != existing) {
+                seq.set(changeLog.changed(id));
+            }
+            return next;
+        });
+        if (seq.get() != 0) {
+            changeLog.publish(seq.get());
+        }
+    }
+
+    private static CustomerDTO.CustomerDTOBuilder nextVersion(CustomerDTO existing) {
+        int version = existing.getVersion() == null ? 0 : existing.getVersion();
+        return existing.toBuilder()
+                .version(version + 1)
+                .updateDate(LocalDateTime.now());
+    }
+
+    @Override
+    public ChangesDTO<CustomerDTO> getChanges(Long since, Integer limit) {
+        long from = ChangeFeeds.since(since);
+        int size = Paging.pageSize(limit);
+        return ChangeFeeds.toChanges(changeLog.findChanges(from, size + 1), size, from,
+                ids -> ids.stream().map(customerMap::get).filter(Objects::nonNull).toList(),
+                CustomerDTO::getId);
+    }
 }
\ No newline at end of file
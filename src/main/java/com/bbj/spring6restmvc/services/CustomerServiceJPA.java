@@ -1,52 +1,89 @@
 package com.bbj.spring6restmvc.services;
 
-import com.bbj.spring6restmvc.mappers.BeerMapper;
+import com.bbj.spring6restmvc.config.MetricsConfig;
 import com.bbj.spring6restmvc.mappers.CustomerMapper;
+import com.bbj.spring6restmvc.model.ChangesDTO;
 import com.bbj.spring6restmvc.model.CustomerDTO;
-import com.bbj.spring6restmvc.repositories.BeerRepository;
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository;
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository.Feed;
 import com.bbj.spring6restmvc.repositories.CustomerRepository;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+@Timed(MetricsConfig.SERVICE_TIMER)
 @Service
 @Primary
 @RequiredArgsConstructor
 public class CustomerServiceJPA implements CustomerService {
     private final CustomerRepository customerRepository;
     private final CustomerMapper customerMapper;
+    private final ChangeFeedRepository changeFeedRepository;
 
     @Override
     public Optional<CustomerDTO> getCustomerById(UUID uuid) {
-        return Optional.empty();
+        return customerRepository.findCustomerDtoById(uuid);
+    }
+
+    @Override
+    public Optional<Integer> getCustomerVersion(UUID uuid) {
+        return customerRepository.findVersionById(uuid);
     }
 
     @Override
     public List<CustomerDTO> getAllCustomers() {
-        return null;
+        return customerRepository.findAllCustomerDtos();
     }
 
     @Override
     public CustomerDTO saveNewCustomer(CustomerDTO customer) {
-        return null;
+        return customerMapper.customerToCustomerDto(
+                customerRepository.save(customerMapper.customerDtoToCustomer(customer)));
     }
 
     @Override
     public void updateCustomerById(UUID customerId, CustomerDTO customer) {
-
+        customerRepository.findById(customerId).ifPresent(foundCustomer -> {
+            foundCustomer.setName(customer.getName());
+            customerRepository.save(foundCustomer);
+        });
     }
 
+    //the tombstone goes in the transaction of the delete
     @Override
+    @Transactional
     public void deleteCustomerById(UUID customerId) {
-
+        customerRepository.findById(customerId).ifPresent(customer -> {
+            customerRepository.delete(customer);
+            changeFeedRepository.insertTombstones(Feed.CUSTOMER, List.of(customerId), LocalDateTime.now());
+        });
     }
 
     @Override
     public void patchCustomerById(UUID customerId, CustomerDTO customer) {
+        customerRepository.findById(customerId).ifPresent(foundCustomer -> {
+            if (StringUtils.hasText(customer.getName())) {
+                foundCustomer.setName(customer.getName());
+                customerRepository.save(foundCustomer);
+            }
+        });
+    }
 
+    //same as BeerServiceJPA.getChanges()
+    @Override
+    @Transactional(readOnly = true)
+    public ChangesDTO<CustomerDTO> getChanges(Long since, Integer limit) {
+        long from = ChangeFeeds.since(since);
+        int size = Paging.pageSize(limit);
+        return ChangeFeeds.toChanges(changeFeedRepository.findChanges(Feed.CUSTOMER, from, size + 1), size, from,
+                customerRepository::findCustomerDtosByIds, CustomerDTO::getId);
     }
 }
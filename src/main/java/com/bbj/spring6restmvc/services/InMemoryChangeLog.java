@@ -0,0 +1,76 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.repositories.ChangeFeedRepository.Change;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The change feed of the map based services: the last change of each id, in seq order.
+ * An id changed again moves to the end, as a row renumbered by ChangeSequencer does.
+ *
+ * No lock: changed() / deleted() are called from inside the per-key compute of the services' maps,
+ * writes of different ids must not queue on one monitor. Writes of one id are serialized by that compute.
+ * The seq they return is handed to publish() once the compute has returned, the map then holds the write.
+ * Readers only see up to the published watermark: the highest seq with every seq below it published.
+ * So a change is never read before the map has it, and what a cursor has passed can not show up later.
+ */
+final class InMemoryChangeLog {
+
+    private final NavigableMap<Long, Change> log = new ConcurrentSkipListMap<>();
+    private final Map<UUID, Long> latest = new ConcurrentHashMap<>();
+    private final AtomicLong seq = new AtomicLong();
+    //seqs published above the watermark, waiting for the ones below them
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong published = new AtomicLong();
+
+    //the seq to publish()
+    long changed(UUID id) {
+        return append(id, false);
+    }
+
+    long deleted(UUID id) {
+        return append(id, true);
+    }
+
+    private long append(UUID id, boolean deleted) {
+        long next = seq.incrementAndGet();
+        Long previous = latest.put(id, next);
+        if (previous != null) {
+            log.remove(previous);
+        }
+        log.put(next, new Change(id, next, deleted));
+        return next;
+    }
+
+    /**
+     * The write of seq is visible: readers can go up to it once every seq below is published too.
+     * Every seq changed() / deleted() returned must be published, the watermark waits for it.
+     */
+    void publish(long changeSeq) {
+        pending.add(changeSeq);
+        long watermark;
+        //only the thread that takes watermark + 1 out moves the watermark, then looks for the next one
+        while (pending.remove((watermark = published.get()) + 1)) {
+            published.set(watermark + 1);
+        }
+    }
+
+    long latestSeq() {
+        return published.get();
+    }
+
+    List<Change> findChanges(long since, int limit) {
+        long watermark = published.get();
+        if (since >= watermark) {
+            return List.of();
+        }
+        return log.subMap(since, false, watermark, true).values().stream().limit(limit).toList();
+    }
+}
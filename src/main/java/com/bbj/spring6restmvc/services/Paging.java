@@ -0,0 +1,28 @@
+package com.bbj.spring6restmvc.services;
+
+/**
+ * Page size / number defaults shared by the service implementations.
+ */
+final class Paging {
+
+    static final int DEFAULT_PAGE_SIZE = 25;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private Paging() {
+    }
+
+    static int pageSize(Integer requested) {
+        if (requested == null || requested < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(requested, MAX_PAGE_SIZE);
+    }
+
+    //capped so that the offset (and the row after the page) still fits in an int: a page that far is empty anyway
+    static int pageNumber(Integer requested, int pageSize) {
+        if (requested == null || requested < 0) {
+            return 0;
+        }
+        return Math.min(requested, Integer.MAX_VALUE / pageSize - 1);
+    }
+}
@@ -0,0 +1,29 @@
+-- Change feed (GET /api/v1/beer/changes, /api/v1/customer/changes) on an existing database:
+-- the change_seq columns, their indexes, the tombstone tables and the sequence.
+-- Not run by the application (hibernate ddl-auto creates them on the dev / seed databases):
+-- apply it once before starting the new version. Existing rows start with change_seq null,
+-- ChangeSequencer numbers them chunk by chunk on its first passes: the first poll gets the whole catalog.
+
+-- H2: ON UPDATE NULL resets the column on every UPDATE of the row, whoever writes it
+ALTER TABLE beer ADD COLUMN IF NOT EXISTS change_seq BIGINT ON UPDATE NULL;
+ALTER TABLE customer ADD COLUMN IF NOT EXISTS change_seq BIGINT ON UPDATE NULL;
+CREATE INDEX IF NOT EXISTS ix_beer_change_seq ON beer (change_seq);
+CREATE INDEX IF NOT EXISTS ix_customer_change_seq ON customer (change_seq);
+
+CREATE TABLE IF NOT EXISTS beer_tombstone (id UUID NOT NULL PRIMARY KEY, change_seq BIGINT, deleted_date TIMESTAMP(6));
+CREATE TABLE IF NOT EXISTS customer_tombstone (id UUID NOT NULL PRIMARY KEY, change_seq BIGINT, deleted_date TIMESTAMP(6));
+CREATE INDEX IF NOT EXISTS ix_beer_tombstone_change_seq ON beer_tombstone (change_seq);
+CREATE INDEX IF NOT EXISTS ix_customer_tombstone_change_seq ON customer_tombstone (change_seq);
+
+CREATE SEQUENCE IF NOT EXISTS change_seq;
+
+-- MySQL / PostgreSQL have no ON UPDATE <expression> for such a column: a BEFORE UPDATE trigger
+-- does the same, and the sequencer's own update must get through it, e.g. PostgreSQL:
+-- ALTER TABLE beer ADD COLUMN change_seq BIGINT;
+-- CREATE FUNCTION reset_change_seq() RETURNS trigger AS $$
+--   BEGIN IF NEW.change_seq IS NOT DISTINCT FROM OLD.change_seq THEN NEW.change_seq := NULL; END IF; RETURN NEW; END
+-- $$ LANGUAGE plpgsql;
+-- CREATE TRIGGER beer_change_seq BEFORE UPDATE ON beer FOR EACH ROW EXECUTE FUNCTION reset_change_seq();
+-- (same for customer; tombstone tables and indexes as above, bytea / BINARY(16) ids on MySQL)
+-- The sequencer's UPDATE and the feed query are written in H2 / SQL:2008 syntax
+-- ("next value for", "fetch first n rows only"): check them against the target db.
@@ -0,0 +1,15 @@
+-- Moves existing varchar(36) ids of beer and customer to 16 byte ids,
+-- to go with hibernate.type.preferred_uuid_jdbc_type=UUID (or BINARY).
+-- Not run by the application: apply it once, app stopped, before starting the new version.
+
+-- H2: the text ids are cast in place to the native uuid type
+ALTER TABLE beer ALTER COLUMN id SET DATA TYPE UUID;
+ALTER TABLE customer ALTER COLUMN id SET DATA TYPE UUID;
+
+-- MySQL (no native uuid, binary(16)): fill a new column, then swap the primary key
+-- ALTER TABLE beer ADD COLUMN id_bin BINARY(16);
+-- UPDATE beer SET id_bin = UUID_TO_BIN(id);
+-- ALTER TABLE beer DROP PRIMARY KEY, DROP COLUMN id, RENAME COLUMN id_bin TO id, ADD PRIMARY KEY (id);
+-- (same for customer)
+--
+-- PostgreSQL: ALTER TABLE beer ALTER COLUMN id TYPE uuid USING id::uuid; (same for customer)
@@ -0,0 +1,366 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.controller.BeerController;
+import com.bbj.spring6restmvc.controller.CustomerController;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.model.CustomerDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load test of every /api/v1/beer and /api/v1/customer endpoint, at several dataset sizes.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=ApiLoadBenchmark [-Dbenchmark.sizes=1000,100000,1000000] [-Dbenchmark.concurrency=16]
+ *     [-Dbenchmark.write-percent=10] [-Dbenchmark.seconds=30] [-Dbenchmark.warmup-seconds=5]
+ *     [-Dbenchmark.label=baseline] [-Dbenchmark.app-args="--bbj.threads.mode=platform"]
+ *
+ * For each size the app is started in this JVM on a random port with the "seed" profile
+ * (size beers, size / 10 customers, in a fresh file db under target/benchmark/api-load),
+ * then benchmark.concurrency clients send requests back to back for benchmark.seconds.
+ * Each request is a read (GET by id, conditional GET, keyset and offset pages, filters ...) or, with
+ * benchmark.write-percent probability, a write (POST, batch POST, PUT, PATCH, DELETE).
+ *
+ * Throughput and p50/p99/p999 latency per operation are printed and appended to
+ * target/benchmark/api-load/results.csv, one line per run / size / operation,
+ * labelled with benchmark.label so runs before and after a change can be compared.
+ */
+class ApiLoadBenchmark {
+
+    static final List<Integer> SIZES = Arrays.stream(System.getProperty("benchmark.sizes", "1000,100000,1000000")
+            .split(",")).map(String::trim).map(Integer::valueOf).toList();
+    static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 16);
+    static final int WRITE_PERCENT = Integer.getInteger("benchmark.write-percent", 10);
+    static final int SECONDS = Integer.getInteger("benchmark.seconds", 30);
+    static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmup-seconds", 5);
+    static final String LABEL = System.getProperty("benchmark.label", "run");
+    static final String APP_ARGS = System.getProperty("benchmark.app-args", "");
+    static final int SAMPLE_IDS = 10_000;
+
+    static final Path DIR = Path.of("target", "benchmark", "api-load");
+    static final BeerStyle[] STYLES = BeerStyle.values();
+
+    HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    ObjectMapper objectMapper;
+    String baseUrl;
+    UUID[] beerIds;
+    UUID[] customerIds;
+    //beers and customers this run created, the only ones it deletes
+    ConcurrentLinkedQueue<UUID> createdBeers = new ConcurrentLinkedQueue<>();
+    ConcurrentLinkedQueue<UUID> createdCustomers = new ConcurrentLinkedQueue<>();
+    //last nextCursor seen, "next page" walks the keyset from there
+    AtomicReference<String> nextCursor = new AtomicReference<>();
+
+    @Test
+    void loadAllEndpoints() throws Exception {
+        String startedAt = Instant.now().toString();
+        for (int size : SIZES) {
+            run(size, startedAt);
+        }
+    }
+
+    private void run(int size, String startedAt) throws Exception {
+        Path dbDir = DIR.resolve("db-" + size);
+        FileSystemUtils.deleteRecursively(dbDir);
+
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.profiles.active=seed",
+                "--spring.datasource.url=jdbc:h2:file:" + dbDir.toAbsolutePath().resolve("beers"),
+                "--bbj.seed.beers=" + size,
+                "--bbj.seed.customers=" + Math.max(size / 10, 1),
+                "--bbj.seed.async=false",
+                "--spring.devtools.restart.enabled=false",
+                "--logging.level.root=warn",
+                "--logging.level.com.bbj=warn"));
+        if (!APP_ARGS.isBlank()) {
+            args.addAll(Arrays.asList(APP_ARGS.trim().split("\\s+")));
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .run(args.toArray(String[]::new))) {
+
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            objectMapper = context.getBean(ObjectMapper.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            beerIds = sampleIds(jdbcTemplate, "beer");
+            customerIds = sampleIds(jdbcTemplate, "customer");
+
+            load(WARMUP_SECONDS, new LinkedHashMap<>());
+            Map<String, Stats> stats = new LinkedHashMap<>();
+            double elapsed = load(SECONDS, stats);
+            report(size, startedAt, elapsed, stats);
+        }
+    }
+
+    private static UUID[] sampleIds(JdbcTemplate jdbcTemplate, String table) {
+        //random sample, so that by id requests do not all hit the same hot rows
+        return jdbcTemplate.queryForList("select id from " + table + " order by rand() limit " + SAMPLE_IDS, UUID.class)
+                .toArray(UUID[]::new);
+    }
+
+    //returns the elapsed seconds, a little over the given ones: the requests in flight at the deadline are waited for
+    private double load(int seconds, Map<String, Stats> stats) throws Exception {
+        for (Operation operation : operations()) {
+            stats.put(operation.name(), new Stats());
+        }
+        List<Operation> reads = operations().stream().filter(operation -> !operation.write()).toList();
+        List<Operation> writes = operations().stream().filter(Operation::write).toList();
+
+        long start = System.nanoTime();
+        long deadline = start + seconds * 1_000_000_000L;
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            futures.add(clients.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    List<Operation> pool = random.nextInt(100) < WRITE_PERCENT ? writes : reads;
+                    Operation operation = pool.get(random.nextInt(pool.size()));
+                    Stats operationStats = stats.get(operation.name());
+
+                    long sent = System.nanoTime();
+                    int status;
+                    try {
+                        status = operation.call().statusCode();
+                    } catch (IOException e) {
+                        status = -1;
+                    }
+                    operationStats.record(System.nanoTime() - sent, status);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        clients.shutdown();
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private void report(int size, String startedAt, double elapsed, Map<String, Stats> stats) throws IOException {
+        Files.createDirectories(DIR);
+        Path results = DIR.resolve("results.csv");
+        List<String> lines = new ArrayList<>();
+        if (!Files.exists(results)) {
+            lines.add("started_at,label,rows,concurrency,write_percent,operation,requests,errors,"
+                    + "throughput_rps,p50_ms,p99_ms,p999_ms");
+        }
+
+        System.out.printf("%n%,d beers / %,d customers, %d clients, %d%% writes, %.1f s (%s)%n",
+                size, Math.max(size / 10, 1), CONCURRENCY, WRITE_PERCENT, elapsed, LABEL);
+        System.out.printf("%-24s %10s %8s %10s %10s %10s %10s%n",
+                "operation", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+
+        Histogram all = new Histogram(3);
+        long allErrors = 0;
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            all.add(operationStats.latencies);
+            allErrors += operationStats.errors.get();
+            lines.add(line(startedAt, size, elapsed, entry.getKey(), operationStats.latencies, operationStats.errors.get()));
+            print(entry.getKey(), elapsed, operationStats.latencies, operationStats.errors.get());
+        }
+        lines.add(line(startedAt, size, elapsed, "ALL", all, allErrors));
+        print("ALL", elapsed, all, allErrors);
+
+        Files.write(results, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        System.out.println("appended to " + results.toAbsolutePath());
+        assertThat(all.getTotalCount()).isPositive();
+    }
+
+    private static void print(String operation, double elapsed, Histogram latencies, long errors) {
+        System.out.printf("%-24s %,10d %,8d %,10.1f %10.2f %10.2f %10.2f%n", operation, latencies.getTotalCount(),
+                errors, latencies.getTotalCount() / elapsed,
+                millis(latencies, 50), millis(latencies, 99), millis(latencies, 99.9));
+    }
+
+    private static String line(String startedAt, int size, double elapsed, String operation, Histogram latencies, long errors) {
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%s,%d,%d,%.1f,%.3f,%.3f,%.3f",
+                startedAt, LABEL, size, CONCURRENCY, WRITE_PERCENT, operation, latencies.getTotalCount(), errors,
+                latencies.getTotalCount() / elapsed,
+                millis(latencies, 50), millis(latencies, 99), millis(latencies, 99.9));
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getTotalCount() == 0 ? 0 : latencies.getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+
+    static class Stats {
+        final ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+        final AtomicLong errors = new AtomicLong();
+
+        void record(long nanos, int status) {
+            latencies.recordValue(nanos);
+            //304 is the expected answer of a conditional GET, 404 of a beer deleted meanwhile
+            if (status < 200 || status >= 400 && status != 404) {
+                errors.incrementAndGet();
+            }
+        }
+    }
+
+    interface Call {
+        HttpResponse<?> call() throws IOException, InterruptedException;
+    }
+
+    record Operation(String name, boolean write, Call action) {
+        HttpResponse<?> call() throws IOException {
+            try {
+                return action.call();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private List<Operation> operations() {
+        return List.of(
+                //reads
+                new Operation("GET beer", false, () -> get(BeerController.BEER_PATH + "/" + any(beerIds), null)),
+                new Operation("GET beer If-None-Match", false, () -> {
+                    UUID id = any(beerIds);
+                    return get(BeerController.BEER_PATH + "/" + id, "\"" + id + "-0\"");
+                }),
+                new Operation("GET beers first page", false, () -> page(BeerController.BEER_PATH)),
+                new Operation("GET beers next page", false, () -> {
+                    String cursor = nextCursor.get();
+                    return page(BeerController.BEER_PATH
+                            + (cursor == null ? "" : "?cursor=" + URLEncoder.encode(cursor, StandardCharsets.UTF_8)));
+                }),
+                new Operation("GET beers by style", false, () -> get(BeerController.BEER_PATH
+                        + "?beerStyle=" + STYLES[ThreadLocalRandom.current().nextInt(STYLES.length)], null)),
+                new Operation("GET beers by name", false, () -> get(BeerController.BEER_PATH
+                        + "?beerName=Hazy%20Owl", null)),
+                new Operation("GET beers sorted page", false, () -> get(BeerController.BEER_PATH
+                        + "?sortBy=PRICE&pageNumber=" + ThreadLocalRandom.current().nextInt(10), null)),
+                new Operation("GET customer", false, () -> get(CustomerController.CUSTOMER_PATH + "/" + any(customerIds), null)),
+                new Operation("GET customers", false, () -> get(CustomerController.CUSTOMER_PATH, null)),
+                //writes
+                new Operation("POST beer", true, () -> {
+                    HttpResponse<Void> response = send("POST", BeerController.BEER_PATH, newBeer());
+                    response.headers().firstValue("Location").ifPresent(location ->
+                            createdBeers.add(UUID.fromString(location.substring(location.lastIndexOf('/') + 1))));
+                    return response;
+                }),
+                new Operation("POST beer batch", true, () ->
+                        send("POST", BeerController.BEER_PATH_BATCH, List.of(newBeer(), newBeer(), newBeer(), newBeer(), newBeer()))),
+                new Operation("PUT beer", true, () -> send("PUT", BeerController.BEER_PATH + "/" + any(beerIds), newBeer())),
+                new Operation("PATCH beer", true, () -> send("PATCH", BeerController.BEER_PATH + "/" + any(beerIds),
+                        BeerDTO.builder().quantityOnHand(ThreadLocalRandom.current().nextInt(500)).build())),
+                new Operation("DELETE beer", true, () -> {
+                    UUID id = createdBeers.poll();
+                    return send("DELETE", BeerController.BEER_PATH + "/" + (id == null ? UUID.randomUUID() : id), null);
+                }),
+                new Operation("POST customer", true, () -> {
+                    HttpResponse<Void> response = send("POST", CustomerController.CUSTOMER_PATH, newCustomer());
+                    response.headers().firstValue("Location").ifPresent(location ->
+                            createdCustomers.add(UUID.fromString(location.substring(location.lastIndexOf('/') + 1))));
+                    return response;
+                }),
+                new Operation("PUT customer", true, () -> send("PUT", CustomerController.CUSTOMER_PATH + "/" + any(customerIds),
+                        newCustomer())),
+                new Operation("PATCH customer", true, () -> send("PATCH", CustomerController.CUSTOMER_PATH + "/" + any(customerIds),
+                        newCustomer())),
+                new Operation("DELETE customer", true, () -> {
+                    UUID id = createdCustomers.poll();
+                    return send("DELETE", CustomerController.CUSTOMER_PATH + "/" + (id == null ? UUID.randomUUID() : id), null);
+                }));
+    }
+
+    private static UUID any(UUID[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    private static BeerDTO newBeer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return BeerDTO.builder()
+                .beerName("Load Test " + random.nextInt(1_000_000))
+                .beerStyle(STYLES[random.nextInt(STYLES.length)])
+                .upc("9" + random.nextLong(100_000_000_000L))
+                .quantityOnHand(random.nextInt(500))
+                .price(new BigDecimal("9.99"))
+                .build();
+    }
+
+    private static CustomerDTO newCustomer() {
+        return CustomerDTO.builder().name("Load Test " + ThreadLocalRandom.current().nextInt(1_000_000)).build();
+    }
+
+    private HttpResponse<Void> get(String path, String ifNoneMatch) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET();
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private HttpResponse<byte[]> page(String path) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 200) {
+            nextCursor.set(objectMapper.readValue(response.body(), BeerPageDTO.class).getNextCursor());
+        }
+        return response;
+    }
+
+    private HttpResponse<Void> send(String method, String path, Object body) throws IOException, InterruptedException {
+        HttpRequest.BodyPublisher publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofByteArray(json(body));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .method(method, publisher)
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private byte[] json(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.controller.BeerController;
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Beers updated / deleted per second through the single-item endpoints (PUT / DELETE /api/v1/beer/{id})
+ * vs the bulk ones (PUT / DELETE /api/v1/beer/batch).
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=BulkEndpointsBenchmark [-Dbenchmark.beers=10000] [-Dbenchmark.bulk-size=1000]
+ *     [-Dbenchmark.concurrency=4]
+ *
+ * The app runs in this JVM on a random port, on its in-memory H2; requests are spread
+ * over benchmark.concurrency client threads in both cases.
+ */
+class BulkEndpointsBenchmark {
+
+    static final int BEERS = Integer.getInteger("benchmark.beers", 10_000);
+    static final int BULK_SIZE = Integer.getInteger("benchmark.bulk-size", 1_000);
+    static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 4);
+
+    ConfigurableApplicationContext context;
+    ObjectMapper objectMapper;
+    HttpClient client = HttpClient.newHttpClient();
+    String baseUrl;
+
+    @BeforeEach
+    void setUp() {
+        context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .run("--server.port=0",
+                        "--spring.devtools.restart.enabled=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn");
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void compareSingleAndBulk() throws Exception {
+        //a warmup round first, then the measured one
+        for (String round : List.of("warmup", "measured")) {
+            List<BeerDTO> single = create(BEERS);
+            List<BeerDTO> bulk = create(BEERS);
+
+            double singlePut = rate(single, 1, beers -> put(BeerController.BEER_PATH + "/" + beers.get(0).getId(),
+                    reprice(beers.get(0))));
+            double bulkPut = rate(bulk, BULK_SIZE, beers -> put(BeerController.BEER_PATH_BATCH,
+                    beers.stream().map(BulkEndpointsBenchmark::reprice).toList()));
+            double singleDelete = rate(single, 1, beers -> delete(BeerController.BEER_PATH + "/" + beers.get(0).getId(),
+                    null));
+            double bulkDelete = rate(bulk, BULK_SIZE, beers -> delete(BeerController.BEER_PATH_BATCH,
+                    beers.stream().map(BeerDTO::getId).toList()));
+
+            System.out.printf("%n%s: %,d beers, %d clients, bulk requests of %,d beers%n",
+                    round, BEERS, CONCURRENCY, BULK_SIZE);
+            System.out.printf("%-8s %14s %14s %8s%n", "", "single beers/s", "bulk beers/s", "speedup");
+            System.out.printf("%-8s %,14.0f %,14.0f %7.1fx%n", "update", singlePut, bulkPut, bulkPut / singlePut);
+            System.out.printf("%-8s %,14.0f %,14.0f %7.1fx%n", "delete", singleDelete, bulkDelete, bulkDelete / singleDelete);
+        }
+    }
+
+    private static BeerDTO reprice(BeerDTO beer) {
+        return beer.toBuilder().price(beer.getPrice().add(BigDecimal.ONE)).version(null).build();
+    }
+
+    private List<BeerDTO> create(int count) throws Exception {
+        List<BeerDTO> beers = IntStream.range(0, count)
+                .mapToObj(i -> BeerDTO.builder()
+                        .beerName("Bulk " + i)
+                        .beerStyle(BeerStyle.values()[i % BeerStyle.values().length])
+                        .upc(String.valueOf(100_000 + i))
+                        .quantityOnHand(i % 500)
+                        .price(new BigDecimal("9.99"))
+                        .build())
+                .toList();
+        HttpResponse<byte[]> response = client.send(json("POST", BeerController.BEER_PATH_BATCH, beers),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(response.statusCode()).isEqualTo(201);
+        List<BatchItemResultDTO> created = objectMapper.readValue(response.body(), new TypeReference<>() {});
+
+        List<BeerDTO> saved = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            saved.add(beers.get(i).toBuilder().id(created.get(i).getId()).build());
+        }
+        return saved;
+    }
+
+    //beers/s sending the beers perRequest at a time, over CONCURRENCY client threads
+    private double rate(List<BeerDTO> beers, int perRequest, Function<List<BeerDTO>, HttpRequest> request)
+            throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        List<Future<Integer>> responses = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int from = 0; from < beers.size(); from += perRequest) {
+            List<BeerDTO> part = beers.subList(from, Math.min(from + perRequest, beers.size()));
+            responses.add(clients.submit(() ->
+                    client.send(request.apply(part), HttpResponse.BodyHandlers.discarding()).statusCode()));
+        }
+        for (Future<Integer> response : responses) {
+            assertThat(response.get()).isBetween(200, 299);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+        return beers.size() / seconds;
+    }
+
+    private HttpRequest put(String path, Object body) {
+        return json("PUT", path, body);
+    }
+
+    private HttpRequest delete(String path, Object body) {
+        return json("DELETE", path, body);
+    }
+
+    private HttpRequest json(String method, String path, Object body) {
+        try {
+            HttpRequest.BodyPublisher publisher = body == null
+                    ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body));
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .method(method, publisher)
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.controller.BeerController;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.services.BeerService;
+import com.bbj.spring6restmvc.services.ChangeSequencer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * What a sync client pays per poll to keep its copy of the catalog up to date:
+ * reading the whole catalog (GET /api/v1/beer, keyset pages of 1000) vs reading the
+ * changes since its last cursor (GET /api/v1/beer/changes, pages of 1000),
+ * with benchmark.changes beers updated and 1 deleted between two polls.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=ChangeFeedBenchmark [-Dbenchmark.sizes=10000,100000] [-Dbenchmark.changes=100]
+ *     [-Dbenchmark.rounds=5]
+ *
+ * For each size the app runs with the "seed" profile in a fresh file db under target/benchmark/change-feed,
+ * the change sequencer is called by the benchmark (numbering the seeded rows is reported too).
+ * Reported: ms and KB per poll, averaged over the rounds. Both sides are checked to see every change.
+ */
+class ChangeFeedBenchmark {
+
+    static final List<Integer> SIZES = Arrays.stream(System.getProperty("benchmark.sizes", "10000,100000")
+            .split(",")).map(String::trim).map(Integer::valueOf).toList();
+    static final int CHANGES = Integer.getInteger("benchmark.changes", 100);
+    static final int ROUNDS = Integer.getInteger("benchmark.rounds", 5);
+    static final int PAGE_SIZE = 1000;
+
+    static final Path DIR = Path.of("target", "benchmark", "change-feed");
+
+    HttpClient client = HttpClient.newHttpClient();
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareFullListAndChanges() throws Exception {
+        System.out.printf("%n%d beers changed + 1 deleted between polls, %d rounds%n", CHANGES, ROUNDS);
+        System.out.printf("%10s %14s %12s %12s %12s %12s%n",
+                "beers", "numbering ms", "full ms", "full KB", "changes ms", "changes KB");
+        for (int size : SIZES) {
+            run(size);
+        }
+    }
+
+    private void run(int size) throws Exception {
+        Path dbDir = DIR.resolve("db-" + size);
+        FileSystemUtils.deleteRecursively(dbDir);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .run("--server.port=0",
+                        "--spring.profiles.active=seed",
+                        "--spring.datasource.url=jdbc:h2:file:" + dbDir.toAbsolutePath().resolve("beers"),
+                        "--bbj.seed.beers=" + size,
+                        "--bbj.seed.customers=1",
+                        "--bbj.seed.async=false",
+                        "--bbj.changes.sequencer.enabled=false",
+                        "--bbj.limiter.enabled=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn")) {
+
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            BeerService beerService = context.getBean(BeerService.class);
+            ChangeSequencer sequencer = context.getBean(ChangeSequencer.class);
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+            long start = System.nanoTime();
+            sequencer.sequence();
+            double numberingMs = (System.nanoTime() - start) / 1e6;
+
+            //the client's first sync: everything, then only what changed
+            Poll initial = pollChanges(baseUrl, 0);
+            assertThat(initial.items()).isEqualTo(size);
+            long cursor = initial.cursor();
+
+            Poll full = new Poll(0, 0, 0, 0);
+            Poll changes = new Poll(0, 0, 0, 0);
+            for (int round = 0; round < ROUNDS; round++) {
+                List<UUID> ids = jdbcTemplate.queryForList(
+                        "select id from beer order by rand() limit " + (CHANGES + 1), UUID.class);
+                ids.subList(1, ids.size()).forEach(id -> beerService.patchBeerById(id,
+                        BeerDTO.builder().price(new BigDecimal("9.99")).build()));
+                beerService.deleteById(ids.get(0));
+                sequencer.sequence();
+
+                Poll fullPoll = pollFull(baseUrl);
+                Poll changesPoll = pollChanges(baseUrl, cursor);
+                assertThat(fullPoll.items()).isEqualTo(size - round - 1);
+                assertThat(changesPoll.items()).isEqualTo(CHANGES + 1);
+                cursor = changesPoll.cursor();
+
+                full = full.plus(fullPoll);
+                changes = changes.plus(changesPoll);
+            }
+
+            System.out.printf("%,10d %14.0f %12.1f %,12d %12.1f %,12d%n", size, numberingMs,
+                    full.nanos() / 1e6 / ROUNDS, full.bytes() / 1024 / ROUNDS,
+                    changes.nanos() / 1e6 / ROUNDS, changes.bytes() / 1024 / ROUNDS);
+        }
+    }
+
+    record Poll(long nanos, long bytes, long items, long cursor) {
+        Poll plus(Poll other) {
+            return new Poll(nanos + other.nanos, bytes + other.bytes, items + other.items, other.cursor);
+        }
+    }
+
+    private Poll pollFull(String baseUrl) throws Exception {
+        Poll poll = new Poll(0, 0, 0, 0);
+        String nextCursor = null;
+        do {
+            String url = baseUrl + BeerController.BEER_PATH + "?pageSize=" + PAGE_SIZE
+                    + (nextCursor == null ? "" : "&cursor=" + URLEncoder.encode(nextCursor, StandardCharsets.UTF_8));
+            Page page = get(url);
+            poll = poll.plus(new Poll(page.nanos(), page.bytes(), page.json().get("content").size(), 0));
+            nextCursor = page.json().path("nextCursor").isTextual() ? page.json().get("nextCursor").asText() : null;
+        } while (nextCursor != null);
+        return poll;
+    }
+
+    private Poll pollChanges(String baseUrl, long since) throws Exception {
+        Poll poll = new Poll(0, 0, 0, since);
+        boolean hasMore;
+        do {
+            Page page = get(baseUrl + BeerController.BEER_PATH_CHANGES + "?limit=" + PAGE_SIZE + "&since=" + poll.cursor());
+            poll = poll.plus(new Poll(page.nanos(), page.bytes(),
+                    page.json().get("changed").size() + page.json().get("deleted").size(),
+                    page.json().get("cursor").asLong()));
+            hasMore = page.json().get("hasMore").asBoolean();
+        } while (hasMore);
+        return poll;
+    }
+
+    record Page(long nanos, long bytes, JsonNode json) {
+    }
+
+    private Page get(String url) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(url)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        long nanos = System.nanoTime() - start;
+        assertThat(response.statusCode()).isEqualTo(200);
+        return new Page(nanos, response.body().length, objectMapper.readTree(response.body()));
+    }
+}
@@ -0,0 +1,97 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.entities.TimeOrderedUuidGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Insert throughput of random (version 4) vs time-ordered (version 7) uuid primary keys,
+ * measured per segment of the load so the slowdown as the table grows shows up.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=IdGeneratorInsertBenchmark [-Dbenchmark.rows=2000000] [-Dbenchmark.segments=10]
+ *
+ * Plain JDBC on a file based H2 in target/, one table per generator.
+ */
+class IdGeneratorInsertBenchmark {
+
+    static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    static final int SEGMENTS = Integer.getInteger("benchmark.segments", 10);
+    static final int BATCH = 1_000;
+
+    Path dbDir;
+    Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dbDir = Files.createDirectories(Path.of("target", "benchmark", "id-generators"));
+        connection = DriverManager.getConnection("jdbc:h2:file:" + dbDir.toAbsolutePath().resolve("db"), "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists beer_random_id");
+            statement.execute("drop table if exists beer_ordered_id");
+            statement.execute("create table beer_random_id (id uuid primary key, beer_name varchar(50))");
+            statement.execute("create table beer_ordered_id (id uuid primary key, beer_name varchar(50))");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects delete files");
+        }
+        connection.close();
+    }
+
+    @Test
+    void compareGenerators() throws Exception {
+        double[] random = insert("insert into beer_random_id values (?, ?)", UUID::randomUUID);
+        double[] ordered = insert("insert into beer_ordered_id values (?, ?)", TimeOrderedUuidGenerator::next);
+
+        int segmentRows = ROWS / SEGMENTS;
+        System.out.printf("%n%,d rows, insert throughput in rows/s per segment of %,d rows%n", ROWS, segmentRows);
+        System.out.printf("%-14s %16s %16s%n", "rows so far", "random (v4)", "time-ordered (v7)");
+        for (int s = 0; s < SEGMENTS; s++) {
+            System.out.printf("%,14d %,16.0f %,16.0f%n", (long) (s + 1) * segmentRows, random[s], ordered[s]);
+        }
+        System.out.printf("%-14s %,16.0f %,16.0f%n", "overall", random[SEGMENTS], ordered[SEGMENTS]);
+    }
+
+    //rows/s of each segment, then the overall rate
+    private double[] insert(String sql, Supplier<UUID> ids) throws SQLException {
+        double[] rates = new double[SEGMENTS + 1];
+        int segmentRows = ROWS / SEGMENTS;
+        connection.setAutoCommit(false);
+        long start = System.nanoTime();
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            for (int s = 0; s < SEGMENTS; s++) {
+                long segmentStart = System.nanoTime();
+                for (int i = 0; i < segmentRows; i++) {
+                    insert.setObject(1, ids.get());
+                    insert.setString(2, "Beer " + i);
+                    insert.addBatch();
+                    if ((i + 1) % BATCH == 0) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+                rates[s] = segmentRows / ((System.nanoTime() - segmentStart) / 1e9);
+            }
+        }
+        rates[SEGMENTS] = (long) segmentRows * SEGMENTS / ((System.nanoTime() - start) / 1e9);
+        connection.setAutoCommit(true);
+        return rates;
+    }
+}
@@ -0,0 +1,125 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.controller.BeerController;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GET /api/v1/beer under overload, with the concurrency limiter (ConcurrencyLimitFilter) off and on.
+ * The db is made the bottleneck: every SQL statement takes benchmark.db-latency-ms (see
+ * ThreadModeLoadBenchmark.SlowDataSource) and there are only benchmark.pool-size connections,
+ * while benchmark.concurrency clients send requests back to back.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=LoadSheddingBenchmark [-Dbenchmark.concurrency=400] [-Dbenchmark.seconds=20]
+ *     [-Dbenchmark.db-latency-ms=50] [-Dbenchmark.pool-size=10] [-Dbenchmark.latency-threshold=200ms]
+ *
+ * Clients wait Retry-After before trying again after a 503, as well behaved ones would.
+ * Reported: answered requests/s, rejected/s, and the latency of the answered ones.
+ */
+class LoadSheddingBenchmark {
+
+    static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 400);
+    static final int SECONDS = Integer.getInteger("benchmark.seconds", 20);
+    static final int POOL_SIZE = Integer.getInteger("benchmark.pool-size", 10);
+    static final String LATENCY_THRESHOLD = System.getProperty("benchmark.latency-threshold", "200ms");
+
+    @Test
+    void compareWithAndWithoutLimiter() throws Exception {
+        Result off = run(false);
+        Result on = run(true);
+
+        System.out.printf("%n%d clients, %d ms per SQL statement, %d db connections, latency threshold %s%n",
+                CONCURRENCY, ThreadModeLoadBenchmark.DB_LATENCY_MS, POOL_SIZE, LATENCY_THRESHOLD);
+        System.out.printf("%-8s %10s %10s %10s %10s %10s%n", "limiter", "ok/s", "503/s", "p50 ms", "p99 ms", "max ms");
+        print("off", off);
+        print("on", on);
+    }
+
+    private static void print(String name, Result result) {
+        Histogram latencies = result.latencies();
+        System.out.printf("%-8s %,10.0f %,10.0f %10.1f %10.1f %10.1f%n", name,
+                latencies.getTotalCount() / (double) SECONDS, result.rejected() / (double) SECONDS,
+                latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(99) / 1e6,
+                latencies.getMaxValue() / 1e6);
+    }
+
+    private Result run(boolean limiter) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new ThreadModeLoadBenchmark.SlowDataSource()))
+                .run("--server.port=0",
+                        "--bbj.limiter.enabled=" + limiter,
+                        "--bbj.limiter.read.latency-threshold=" + LATENCY_THRESHOLD,
+                        "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "--spring.devtools.restart.enabled=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn")) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + BeerController.BEER_PATH + "?pageSize=10");
+            HttpClient client = HttpClient.newHttpClient();
+
+            load(client, uri, 3); //warm up, and lets the limit settle
+            Result result = load(client, uri, SECONDS);
+            assertThat(result.latencies().getTotalCount()).isPositive();
+            return result;
+        }
+    }
+
+    record Result(Histogram latencies, long rejected) {
+    }
+
+    private static Result load(HttpClient client, URI uri, int seconds) {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+        AtomicLong rejected = new AtomicLong();
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+
+        CompletableFuture<?>[] clients = new CompletableFuture<?>[CONCURRENCY];
+        for (int i = 0; i < CONCURRENCY; i++) {
+            clients[i] = loop(client, request, deadline, latencies, rejected);
+        }
+        CompletableFuture.allOf(clients).join();
+        return new Result(latencies, rejected.get());
+    }
+
+    private static CompletableFuture<Void> loop(HttpClient client, HttpRequest request, long deadline,
+                                                ConcurrentHistogram latencies, AtomicLong rejected) {
+        if (System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenCompose(response -> {
+                    boolean inWindow = System.nanoTime() < deadline;
+                    if (response.statusCode() == 503) {
+                        if (inWindow) {
+                            rejected.incrementAndGet();
+                        }
+                        long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+                        return CompletableFuture.supplyAsync(() -> null,
+                                        CompletableFuture.delayedExecutor(retryAfter, TimeUnit.SECONDS))
+                                .thenCompose(ignored -> loop(client, request, deadline, latencies, rejected));
+                    }
+                    if (response.statusCode() == 200 && inWindow) {
+                        latencies.recordValue(System.nanoTime() - start);
+                    }
+                    return loop(client, request, deadline, latencies, rejected);
+                });
+    }
+}
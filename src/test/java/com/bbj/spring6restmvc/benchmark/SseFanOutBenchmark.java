@@ -0,0 +1,191 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.controller.BeerChangeBroadcaster;
+import com.bbj.spring6restmvc.controller.BeerEventController;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.services.BeerService;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fan-out of GET /api/v1/beer/events (BeerChangeBroadcaster): benchmark.subscribers clients read the stream
+ * while beers are updated at benchmark.rate per second, and benchmark.slow-subscribers connect but never read
+ * (tiny receive buffer), they should be dropped without slowing down the others.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=SseFanOutBenchmark [-Dbenchmark.subscribers=1000] [-Dbenchmark.slow-subscribers=5]
+ *     [-Dbenchmark.rate=1000] [-Dbenchmark.seconds=45] [-Dbenchmark.beers=5000]
+ *
+ * Clients and app share the JVM: the clients are HttpClient line subscribers on 4 threads. The thread count
+ * after connecting includes the Tomcat workers started by the burst of connections (up to 200).
+ * The never reading ones are dropped once the kernel buffers of their sockets are full (a few MB on loopback).
+ * Each update writes System.nanoTime() into the beer name, latency = when a client reads it - that,
+ * so it includes bbj.changes.sequence-interval and bbj.sse.poll-interval (100ms each here).
+ * Reported: events read per second (all clients), how many of the updates were coalesced away,
+ * latency percentiles, dropped subscribers, and the JVM thread count before and after connecting.
+ */
+class SseFanOutBenchmark {
+
+    static final int SUBSCRIBERS = Integer.getInteger("benchmark.subscribers", 1000);
+    static final int SLOW_SUBSCRIBERS = Integer.getInteger("benchmark.slow-subscribers", 5);
+    static final int RATE = Integer.getInteger("benchmark.rate", 1000);
+    static final int SECONDS = Integer.getInteger("benchmark.seconds", 45);
+    static final int BEERS = Integer.getInteger("benchmark.beers", 5000);
+
+    static final String NAME_FIELD = "\"beerName\":\"t";
+
+    ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+    LongAdder events = new LongAdder();
+    volatile boolean measuring;
+
+    @Test
+    void fanOut() throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .run("--server.port=0",
+                        "--spring.profiles.active=seed",
+                        "--spring.datasource.url=jdbc:h2:mem:sse-fan-out",
+                        "--bbj.seed.beers=" + BEERS,
+                        "--bbj.seed.customers=1",
+                        "--bbj.seed.async=false",
+                        "--bbj.changes.sequence-interval=100ms",
+                        "--bbj.sse.poll-interval=100ms",
+                        "--bbj.sse.max-subscribers=" + (SUBSCRIBERS + SLOW_SUBSCRIBERS),
+                        "--bbj.limiter.enabled=false",
+                        "--server.tomcat.max-connections=" + (SUBSCRIBERS + SLOW_SUBSCRIBERS + 100),
+                        "--spring.devtools.restart.enabled=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn")) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + BeerEventController.BEER_PATH_EVENTS);
+            BeerService beerService = context.getBean(BeerService.class);
+            BeerChangeBroadcaster broadcaster = context.getBean(BeerChangeBroadcaster.class);
+            List<UUID> ids = context.getBean(JdbcTemplate.class).queryForList("select id from beer", UUID.class);
+            //the seeded beers are numbered and pushed before anyone subscribes
+            Thread.sleep(1000);
+
+            int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+            HttpClient client = HttpClient.newBuilder().executor(Executors.newFixedThreadPool(4)).build();
+            for (int i = 0; i < SUBSCRIBERS; i++) {
+                client.sendAsync(HttpRequest.newBuilder(uri).header("Accept", "text/event-stream").build(),
+                        HttpResponse.BodyHandlers.fromLineSubscriber(new EventReader()));
+            }
+            List<Socket> slow = new ArrayList<>();
+            for (int i = 0; i < SLOW_SUBSCRIBERS; i++) {
+                slow.add(neverReading(port));
+            }
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (broadcaster.getSubscriberCount() < SUBSCRIBERS + SLOW_SUBSCRIBERS
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertThat(broadcaster.getSubscriberCount()).isEqualTo(SUBSCRIBERS + SLOW_SUBSCRIBERS);
+            int threadsConnected = ManagementFactory.getThreadMXBean().getThreadCount();
+
+            AtomicLong updates = new AtomicLong();
+            ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+            measuring = true;
+            writer.scheduleAtFixedRate(() -> {
+                UUID id = ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+                beerService.patchBeerById(id, BeerDTO.builder().beerName("t" + System.nanoTime()).build());
+                updates.incrementAndGet();
+            }, 0, 1_000_000 / RATE, TimeUnit.MICROSECONDS);
+
+            Thread.sleep(SECONDS * 1000L);
+            writer.shutdown();
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+            //the last ones still in flight
+            Thread.sleep(1000);
+            measuring = false;
+
+            long written = updates.get();
+            long read = events.sum();
+            System.out.printf("%n%d subscribers + %d never reading, %d updates/s over %d beers, %d s%n",
+                    SUBSCRIBERS, SLOW_SUBSCRIBERS, RATE, BEERS, SECONDS);
+            System.out.printf("%12s %12s %10s %10s %10s %10s %8s %16s%n", "events/s", "coalesced",
+                    "p50 ms", "p99 ms", "max ms", "dropped", "remain", "threads");
+            System.out.printf("%,12.0f %11.1f%% %10.1f %10.1f %10.1f %10d %8d %7d -> %6d%n",
+                    read / (double) SECONDS,
+                    100.0 * (1 - read / (double) (written * SUBSCRIBERS)),
+                    latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(99) / 1e6,
+                    latencies.getMaxValue() / 1e6,
+                    broadcaster.getDroppedCount(), broadcaster.getSubscriberCount(),
+                    threadsBefore, threadsConnected);
+
+            for (Socket socket : slow) {
+                socket.close();
+            }
+        }
+    }
+
+    //subscribes, then lets the kernel buffers fill up
+    private static Socket neverReading(int port) throws Exception {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(1024);
+        socket.connect(new InetSocketAddress("localhost", port));
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET " + BeerEventController.BEER_PATH_EVENTS + " HTTP/1.1\r\nHost: localhost\r\n"
+                + "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return socket;
+    }
+
+    private final class EventReader implements Flow.Subscriber<String> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            int name = line.startsWith("data:") ? line.indexOf(NAME_FIELD) : -1;
+            if (name < 0 || !measuring) {
+                return;
+            }
+            int start = name + NAME_FIELD.length();
+            try {
+                long written = Long.parseLong(line, start, line.indexOf('"', start), 10);
+                latencies.recordValue(Math.max(System.nanoTime() - written, 0));
+                events.increment();
+            } catch (NumberFormatException e) {
+                //a seeded name
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.controller.BeerController;
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * benchmark.concurrency clients all taking one unit at a time out of the stock of the same beer:
+ * - optimistic: GET the beer, PUT it back with quantityOnHand - 1 and If-Match, again from the GET on a 412
+ * - atomic: POST /api/v1/beer/{beerId}/stock with delta -1 (one guarded UPDATE)
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=StockContentionBenchmark [-Dbenchmark.concurrency=64] [-Dbenchmark.seconds=10]
+ *
+ * Reported: units taken per second, failed attempts (412) per unit taken, latency of an order
+ * from its first attempt to the one that went through; and the stock left is checked against the units taken.
+ * The concurrency limiter is off, only the contention on the row is measured.
+ */
+class StockContentionBenchmark {
+
+    static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 64);
+    static final int SECONDS = Integer.getInteger("benchmark.seconds", 10);
+    static final int STOCK = 10_000_000;
+
+    ConfigurableApplicationContext context;
+    ObjectMapper objectMapper;
+    HttpClient client = HttpClient.newHttpClient();
+    String baseUrl;
+
+    @BeforeEach
+    void setUp() {
+        context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .run("--server.port=0",
+                        "--bbj.limiter.enabled=false",
+                        "--spring.devtools.restart.enabled=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn");
+        baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void compareOptimisticAndAtomic() throws Exception {
+        //a warmup round first, then the measured one
+        for (String round : List.of("warmup", "measured")) {
+            Result optimistic = run(this::takeOneOptimistic);
+            Result atomic = run(this::takeOneAtomic);
+
+            System.out.printf("%n%s: %d clients on the same beer, %d s%n", round, CONCURRENCY, SECONDS);
+            System.out.printf("%-11s %10s %14s %10s %10s %10s%n",
+                    "", "units/s", "412s per unit", "p50 ms", "p99 ms", "max ms");
+            print("optimistic", optimistic);
+            print("atomic", atomic);
+        }
+    }
+
+    private static void print(String name, Result result) {
+        Histogram latencies = result.latencies();
+        System.out.printf("%-11s %,10.0f %14.1f %10.1f %10.1f %10.1f%n", name,
+                latencies.getTotalCount() / result.seconds(),
+                result.conflicts() / (double) Math.max(latencies.getTotalCount(), 1),
+                latencies.getValueAtPercentile(50) / 1e6, latencies.getValueAtPercentile(99) / 1e6,
+                latencies.getMaxValue() / 1e6);
+    }
+
+    record Result(Histogram latencies, long conflicts, double seconds) {
+    }
+
+    interface Order {
+        //takes one unit out of the beer's stock, returns the number of failed attempts before it went through
+        int takeOne(UUID beerId) throws Exception;
+    }
+
+    private Result run(Order order) throws Exception {
+        UUID beerId = createBeer();
+        ConcurrentHistogram latencies = new ConcurrentHistogram(3);
+        AtomicLong conflicts = new AtomicLong();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        long deadline = start + SECONDS * 1_000_000_000L;
+        List<Future<?>> loops = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            loops.add(clients.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    long sent = System.nanoTime();
+                    conflicts.addAndGet(order.takeOne(beerId));
+                    latencies.recordValue(System.nanoTime() - sent);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> loop : loops) {
+            loop.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        clients.shutdown();
+
+        //nothing lost, nothing taken twice
+        assertThat(getBeer(beerId).body().getQuantityOnHand()).isEqualTo(STOCK - latencies.getTotalCount());
+        return new Result(latencies, conflicts.get(), seconds);
+    }
+
+    private int takeOneOptimistic(UUID beerId) throws Exception {
+        for (int failed = 0; ; failed++) {
+            Beer current = getBeer(beerId);
+            BeerDTO update = current.body().toBuilder()
+                    .quantityOnHand(current.body().getQuantityOnHand() - 1)
+                    .version(null)
+                    .build();
+            HttpRequest put = json("PUT", BeerController.BEER_PATH + "/" + beerId, update)
+                    .header(HttpHeaders.IF_MATCH, current.eTag())
+                    .build();
+            int status = client.send(put, HttpResponse.BodyHandlers.discarding()).statusCode();
+            if (status == 204) {
+                return failed;
+            }
+            assertThat(status).isEqualTo(412);
+        }
+    }
+
+    private int takeOneAtomic(UUID beerId) throws Exception {
+        HttpRequest post = json("POST", BeerController.BEER_PATH + "/" + beerId + "/stock", new StockDelta(-1)).build();
+        assertThat(client.send(post, HttpResponse.BodyHandlers.discarding()).statusCode()).isEqualTo(204);
+        return 0;
+    }
+
+    record StockDelta(int delta) {
+    }
+
+    record Beer(BeerDTO body, String eTag) {
+    }
+
+    private Beer getBeer(UUID beerId) throws Exception {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(
+                URI.create(baseUrl + BeerController.BEER_PATH + "/" + beerId)).build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(response.statusCode()).isEqualTo(200);
+        return new Beer(objectMapper.readValue(response.body(), BeerDTO.class),
+                response.headers().firstValue(HttpHeaders.ETAG).orElseThrow());
+    }
+
+    private UUID createBeer() throws Exception {
+        BeerDTO beer = BeerDTO.builder()
+                .beerName("Hot beer")
+                .beerStyle(BeerStyle.IPA)
+                .upc("424242")
+                .quantityOnHand(STOCK)
+                .price(new BigDecimal("4.99"))
+                .build();
+        HttpResponse<byte[]> response = client.send(json("POST", BeerController.BEER_PATH_BATCH, List.of(beer)).build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+        assertThat(response.statusCode()).isEqualTo(201);
+        List<BatchItemResultDTO> created = objectMapper.readValue(response.body(), new TypeReference<>() {});
+        return created.get(0).getId();
+    }
+
+    private HttpRequest.Builder json(String method, String path, Object body) throws Exception {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)));
+    }
+}
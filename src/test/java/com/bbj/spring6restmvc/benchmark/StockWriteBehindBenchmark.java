@@ -0,0 +1,122 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
+import com.bbj.spring6restmvc.repositories.BeerRepository;
+import com.bbj.spring6restmvc.services.BeerService;
+import com.bbj.spring6restmvc.services.BeerStockBuffer;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stock events per second through BeerService.adjustStock(), one delta per call, spread over
+ * benchmark.beers hot beers by benchmark.concurrency threads: guarded UPDATE per delta (default)
+ * vs write-behind (beer.stock.write-behind.enabled, BeerStockBuffer).
+ * Called on the service, not over HTTP, so the db write path is what is measured.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=StockWriteBehindBenchmark [-Dbenchmark.concurrency=16] [-Dbenchmark.beers=10]
+ *     [-Dbenchmark.seconds=10] [-Dbenchmark.flush-interval=100ms]
+ *
+ * After each run the stock in the db is checked against the deltas accepted.
+ */
+class StockWriteBehindBenchmark {
+
+    static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 16);
+    static final int BEERS = Integer.getInteger("benchmark.beers", 10);
+    static final int SECONDS = Integer.getInteger("benchmark.seconds", 10);
+    static final String FLUSH_INTERVAL = System.getProperty("benchmark.flush-interval", "100ms");
+    static final int STOCK = 100_000_000;
+
+    @Test
+    void compareDirectAndWriteBehind() throws Exception {
+        double direct = run(false);
+        double writeBehind = run(true);
+
+        System.out.printf("%n%d threads, %d hot beers, %d s, flush every %s%n", CONCURRENCY, BEERS, SECONDS, FLUSH_INTERVAL);
+        System.out.printf("%-13s %,12.0f events/s%n", "direct", direct);
+        System.out.printf("%-13s %,12.0f events/s (%.0fx)%n", "write-behind", writeBehind, writeBehind / direct);
+    }
+
+    private double run(boolean writeBehind) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .run("--spring.main.web-application-type=none",
+                        "--beer.stock.write-behind.enabled=" + writeBehind,
+                        "--beer.stock.write-behind.flush-interval=" + FLUSH_INTERVAL,
+                        "--spring.devtools.restart.enabled=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn")) {
+
+            BeerService beerService = context.getBean(BeerService.class);
+            BeerRepository beerRepository = context.getBean(BeerRepository.class);
+            List<UUID> beers = IntStream.range(0, BEERS)
+                    .mapToObj(i -> beerService.saveNewBeer(BeerDTO.builder()
+                            .beerName("Hot " + i)
+                            .quantityOnHand(STOCK)
+                            .price(BigDecimal.ONE)
+                            .build()).getId())
+                    .toList();
+
+            load(beerService, beers, 2); //warmup
+            LongAdder warmup = taken(beerRepository, context, beers);
+            long start = System.nanoTime();
+            long events = load(beerService, beers, SECONDS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            //every accepted delta is in the db once flushed
+            LongAdder total = taken(beerRepository, context, beers);
+            assertThat(total.sum() - warmup.sum()).isEqualTo(events);
+            return events / seconds;
+        }
+    }
+
+    //units taken out of the stock of the beers, as the db has it
+    private static LongAdder taken(BeerRepository beerRepository,
+                                   ConfigurableApplicationContext context, List<UUID> beers) {
+        context.getBean(BeerStockBuffer.class).flush();
+        LongAdder taken = new LongAdder();
+        beers.forEach(id -> taken.add(STOCK - beerRepository.findQuantityOnHandById(id).orElseThrow()));
+        return taken;
+    }
+
+    private static long load(BeerService beerService, List<UUID> beers, int seconds) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        ExecutorService threads = Executors.newFixedThreadPool(CONCURRENCY);
+        List<Future<Long>> counts = new ArrayList<>();
+        for (int t = 0; t < CONCURRENCY; t++) {
+            counts.add(threads.submit(() -> {
+                long accepted = 0;
+                while (System.nanoTime() < deadline) {
+                    UUID beerId = beers.get(ThreadLocalRandom.current().nextInt(beers.size()));
+                    List<BatchItemResultDTO> result = beerService.adjustStock(
+                            List.of(StockAdjustmentDTO.builder().beerId(beerId).delta(-1).build()));
+                    assertThat(result.get(0).getStatus()).isEqualTo(204);
+                    accepted++;
+                }
+                return accepted;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> count : counts) {
+            total += count.get();
+        }
+        threads.shutdown();
+        return total;
+    }
+}
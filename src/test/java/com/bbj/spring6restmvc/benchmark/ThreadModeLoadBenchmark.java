@@ -0,0 +1,160 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import com.bbj.spring6restmvc.Spring6RestMvcApplication;
+import com.bbj.spring6restmvc.config.ThreadingConfig;
+import com.bbj.spring6restmvc.config.VirtualThreads;
+import com.bbj.spring6restmvc.controller.BeerController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of GET /api/v1/beer when every SQL statement takes benchmark.db-latency-ms,
+ * with requests on Tomcat's platform thread pool vs on virtual threads.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=ThreadModeLoadBenchmark [-Dbenchmark.concurrency=800] [-Dbenchmark.seconds=10]
+ *     [-Dbenchmark.db-latency-ms=50] [-Dbenchmark.tomcat-threads=200] [-Dbenchmark.pool-size=600]
+ *
+ * On platform threads throughput tops out at tomcat-threads / latency; pick a latency
+ * high enough for that to be below what the CPUs can serve, or both modes just measure the CPU.
+ * The connection pool is sized above Tomcat's 200 threads, so that on platform threads
+ * the thread pool is what runs out, as in production under a slow db.
+ * The virtual thread run is skipped (and says so) on a JVM without virtual threads.
+ */
+class ThreadModeLoadBenchmark {
+
+    static final int CONCURRENCY = Integer.getInteger("benchmark.concurrency", 800);
+    static final int SECONDS = Integer.getInteger("benchmark.seconds", 10);
+    static final long DB_LATENCY_MS = Long.getLong("benchmark.db-latency-ms", 50);
+    static final int POOL_SIZE = Integer.getInteger("benchmark.pool-size", 600);
+    static final int TOMCAT_THREADS = Integer.getInteger("benchmark.tomcat-threads", 200);
+
+    @Test
+    void compareThreadModes() throws Exception {
+        double platform = run("platform");
+        System.out.printf("%n%d concurrent clients, %d ms per SQL statement, %d db connections, %d tomcat threads%n",
+                CONCURRENCY, DB_LATENCY_MS, POOL_SIZE, TOMCAT_THREADS);
+        System.out.printf("%-10s %,10.0f req/s%n", "platform", platform);
+
+        if (!VirtualThreads.isSupported()) {
+            System.out.printf("%-10s not supported by this JVM (%d), needs 21+%n", "virtual", Runtime.version().feature());
+            return;
+        }
+        double virtual = run("virtual");
+        System.out.printf("%-10s %,10.0f req/s%n", "virtual", virtual);
+    }
+
+    private double run(String mode) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6RestMvcApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new SlowDataSource()))
+                //args, not properties(): those are defaults, application.properties would win
+                .run("--server.port=0",
+                        "--" + ThreadingConfig.THREAD_MODE_PROPERTY + "=" + mode,
+                        "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "--spring.devtools.restart.enabled=false",
+                        "--logging.level.root=warn",
+                        "--logging.level.com.bbj=warn")) {
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            URI uri = URI.create("http://localhost:" + port + BeerController.BEER_PATH + "?pageSize=10");
+            HttpClient client = HttpClient.newHttpClient();
+
+            load(client, uri, 2); //warm up
+            long requests = load(client, uri, SECONDS);
+            assertThat(requests).isPositive();
+            return requests / (double) SECONDS;
+        }
+    }
+
+    //CONCURRENCY clients, each sending its next request as soon as the previous one is answered
+    private static long load(HttpClient client, URI uri, int seconds) {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong ok = new AtomicLong();
+        HttpRequest request = HttpRequest.newBuilder(uri).build();
+
+        CompletableFuture<?>[] clients = new CompletableFuture<?>[CONCURRENCY];
+        for (int i = 0; i < CONCURRENCY; i++) {
+            clients[i] = loop(client, request, deadline, ok);
+        }
+        CompletableFuture.allOf(clients).join();
+        return ok.get();
+    }
+
+    private static CompletableFuture<Void> loop(HttpClient client, HttpRequest request, long deadline, AtomicLong ok) {
+        if (System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenCompose(response -> {
+                    //answers still in flight at the deadline are not part of the measured window
+                    if (response.statusCode() == 200 && System.nanoTime() < deadline) {
+                        ok.incrementAndGet();
+                    }
+                    return loop(client, request, deadline, ok);
+                });
+    }
+
+    /**
+     * Wraps the DataSource so that every statement execution first sleeps DB_LATENCY_MS,
+     * holding its thread and its connection like a slow db would.
+     */
+    static class SlowDataSource implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return slow(super.getConnection(), Connection.class);
+                }
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T slow(T target, Class<T> type) {
+            InvocationHandler handler = (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) {
+                    Thread.sleep(DB_LATENCY_MS);
+                }
+                try {
+                    Object result = method.invoke(target, args);
+                    if (result instanceof PreparedStatement statement) {
+                        return slow(statement, PreparedStatement.class);
+                    }
+                    if (result instanceof Statement statement) {
+                        return slow(statement, Statement.class);
+                    }
+                    return result;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            };
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
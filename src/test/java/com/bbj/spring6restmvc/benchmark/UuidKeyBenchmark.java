@@ -0,0 +1,137 @@
+package com.bbj.spring6restmvc.benchmark;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * varchar(36) vs native 16 byte uuid primary keys: size on disk and lookup latency.
+ *
+ * Not part of the build (no Test suffix), run on demand:
+ * mvn test -Dtest=UuidKeyBenchmark [-Dbenchmark.rows=1000000] [-Dbenchmark.lookups=200000]
+ *
+ * Plain JDBC on a file based H2 in target/, so that DISK_SPACE_USED() is meaningful.
+ */
+class UuidKeyBenchmark {
+
+    static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    static final int LOOKUPS = Integer.getInteger("benchmark.lookups", 200_000);
+    static final int BATCH = 1_000;
+
+    Path dbDir;
+    Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dbDir = Files.createDirectories(Path.of("target", "benchmark", "uuid-keys"));
+        connection = DriverManager.getConnection("jdbc:h2:file:" + dbDir.toAbsolutePath().resolve("db"), "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists beer_varchar_id");
+            statement.execute("drop table if exists beer_uuid_id");
+            statement.execute("create table beer_varchar_id (id varchar(36) primary key, beer_name varchar(50))");
+            statement.execute("create table beer_uuid_id (id uuid primary key, beer_name varchar(50))");
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("drop all objects delete files");
+        }
+        connection.close();
+    }
+
+    @Test
+    void compareKeyTypes() throws Exception {
+        UUID[] ids = new UUID[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            ids[i] = UUID.randomUUID();
+        }
+
+        long varcharInsertMs = insert("insert into beer_varchar_id values (?, ?)", ids, true);
+        long uuidInsertMs = insert("insert into beer_uuid_id values (?, ?)", ids, false);
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("checkpoint sync");
+        }
+        long varcharBytes = diskSpace("BEER_VARCHAR_ID");
+        long uuidBytes = diskSpace("BEER_UUID_ID");
+
+        double[] varcharLookup = lookups("select beer_name from beer_varchar_id where id = ?", ids, true);
+        double[] uuidLookup = lookups("select beer_name from beer_uuid_id where id = ?", ids, false);
+
+        System.out.printf("%n%,d rows, %,d random primary key lookups%n", ROWS, LOOKUPS);
+        System.out.printf("%-14s %12s %14s %14s %14s%n", "id type", "insert ms", "disk bytes", "lookup p50 us", "lookup p99 us");
+        System.out.printf("%-14s %,12d %,14d %14.2f %14.2f%n", "varchar(36)", varcharInsertMs, varcharBytes, varcharLookup[0], varcharLookup[1]);
+        System.out.printf("%-14s %,12d %,14d %14.2f %14.2f%n", "uuid (16 B)", uuidInsertMs, uuidBytes, uuidLookup[0], uuidLookup[1]);
+
+        assertThat(uuidBytes).isLessThan(varcharBytes);
+    }
+
+    private long insert(String sql, UUID[] ids, boolean asText) throws SQLException {
+        long start = System.nanoTime();
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            for (int i = 0; i < ids.length; i++) {
+                insert.setObject(1, asText ? ids[i].toString() : ids[i]);
+                insert.setString(2, "Beer " + i);
+                insert.addBatch();
+                if ((i + 1) % BATCH == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    //p50 and p99 in microseconds
+    private double[] lookups(String sql, UUID[] ids, boolean asText) throws SQLException {
+        long[] nanos = new long[LOOKUPS];
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+            //warm up the plan and the page cache before measuring
+            for (int i = 0; i < Math.min(LOOKUPS, 20_000); i++) {
+                lookup(select, ids, asText);
+            }
+            for (int i = 0; i < LOOKUPS; i++) {
+                long start = System.nanoTime();
+                lookup(select, ids, asText);
+                nanos[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(nanos);
+        return new double[]{nanos[LOOKUPS / 2] / 1_000.0, nanos[(int) (LOOKUPS * 0.99)] / 1_000.0};
+    }
+
+    private static void lookup(PreparedStatement select, UUID[] ids, boolean asText) throws SQLException {
+        UUID id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        select.setObject(1, asText ? id.toString() : id);
+        try (ResultSet resultSet = select.executeQuery()) {
+            assertThat(resultSet.next()).isTrue();
+        }
+    }
+
+    private long diskSpace(String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select disk_space_used('" + table + "')")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.bbj.spring6restmvc.bootstrap;
+
+import com.bbj.spring6restmvc.entities.Beer;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.repositories.BeerRepository;
+import com.bbj.spring6restmvc.repositories.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//the seeder commits from its own threads, nothing to roll back: clean up instead
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DataSeederTest {
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    CustomerRepository customerRepository;
+
+    @AfterEach
+    void tearDown() {
+        beerRepository.deleteAllInBatch();
+        customerRepository.deleteAllInBatch();
+    }
+
+    DataSeeder seeder(long beers, long customers) {
+        return new DataSeeder(jdbcTemplate, transactionManager, beers, customers, 3, 500, 42, false);
+    }
+
+    @Test
+    void testSeed() {
+        DataSeeder seeder = seeder(2_345, 321);
+        seeder.seed();
+        seeder.shutdown();
+
+        assertThat(beerRepository.count()).isEqualTo(2_345);
+        assertThat(customerRepository.count()).isEqualTo(321);
+
+        List<Beer> beers = beerRepository.findAll();
+        assertThat(beers).allSatisfy(beer -> {
+            assertThat(beer.getId().version()).isEqualTo(7);
+            assertThat(beer.getVersion()).isZero();
+            assertThat(beer.getUpc()).hasSize(12);
+            assertThat(beer.getUpdateDate()).isAfterOrEqualTo(beer.getCreatedDate());
+        });
+        assertThat(beers).extracting(Beer::getUpc).doesNotHaveDuplicates();
+        //skewed, not uniform: many more IPAs than goses
+        long ipa = beers.stream().filter(beer -> beer.getBeerStyle() == BeerStyle.IPA).count();
+        long gose = beers.stream().filter(beer -> beer.getBeerStyle() == BeerStyle.GOSE).count();
+        assertThat(ipa).isGreaterThan(gose * 5);
+    }
+
+    @Test
+    void testOnlyMissingRowsAreInserted() {
+        DataSeeder seeder = seeder(1_000, 10);
+        assertThat(seeder.seedBeers()).isEqualTo(1_000);
+        assertThat(seeder.seedBeers()).isZero();
+
+        DataSeeder bigger = seeder(1_500, 10);
+        assertThat(bigger.seedBeers()).isEqualTo(500);
+        assertThat(beerRepository.count()).isEqualTo(1_500);
+        seeder.shutdown();
+        bigger.shutdown();
+    }
+}
@@ -0,0 +1,124 @@
+package com.bbj.spring6restmvc.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitFilterTest {
+
+    //1 request in flight per group, limits can't move: min = max = 1
+    ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(1, 1, Duration.ofSeconds(1), 1, 1, Duration.ofSeconds(1),
+            1, 0.5, Duration.ofSeconds(1), Duration.ofMillis(1500), new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+    @Test
+    void testOverLimitIsRejectedWithRetryAfter() throws Exception {
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[2];
+
+        //a second read arrives while the first is still in the chain, a write too
+        MockHttpServletResponse first = filter(get(), (request, response) -> {
+            nested[0] = filter(get());
+            nested[1] = filter(new MockHttpServletRequest("DELETE", "/api/v1/beer/1"));
+        });
+
+        assertThat(first.getStatus()).isEqualTo(200);
+        assertThat(nested[0].getStatus()).isEqualTo(503);
+        assertThat(nested[0].getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        //writes have their own limit
+        assertThat(nested[1].getStatus()).isEqualTo(200);
+        //released: the next read goes through
+        assertThat(filter(get()).getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void testOnlyApiIsLimited() throws Exception {
+        MockHttpServletResponse[] actuator = new MockHttpServletResponse[1];
+
+        filter(get(), (request, response) ->
+                actuator[0] = filter(new MockHttpServletRequest("GET", "/actuator/health")));
+
+        assertThat(actuator[0].getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void testLimiterBacksOffWhenSlowAndGrowsWhenFast() {
+        //every MIN_WINDOW_SAMPLES releases close a window
+        AimdLimiter limiter = new AimdLimiter(10, 2, 20, Duration.ofMillis(100), 0.5, Duration.ZERO);
+
+        acquireAll(limiter, 10);
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        //1 slow out of 10, p90 is fast: + 1 for each of the fast ones with 5 or more in flight
+        release(limiter, 1, 9);
+        assertThat(limiter.getLimit()).isEqualTo(15);
+
+        //2 slow (or failed) out of 10: one cut for the whole window
+        acquireAll(limiter, 10);
+        limiter.release(0, true);
+        release(limiter, 1, 8);
+        assertThat(limiter.getLimit()).isEqualTo(7);
+
+        //a window needs MIN_WINDOW_SAMPLES releases before the limit moves
+        acquireAll(limiter, 7);
+        release(limiter, 7, 0);
+        assertThat(limiter.getLimit()).isEqualTo(7);
+        acquireAll(limiter, 3);
+        release(limiter, 3, 0);
+        assertThat(limiter.getLimit()).isEqualTo(3);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void testLimiterCutsAtMostOncePerWindow() {
+        AimdLimiter limiter = new AimdLimiter(100, 4, 400, Duration.ofMillis(100), 0.9, Duration.ofHours(1));
+
+        //the first window is still open: 30 slow answers in a row do not move the limit
+        for (int i = 0; i < 30; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.release(TimeUnit.SECONDS.toNanos(3), false);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(100);
+    }
+
+    //slow ones (500ms), then fast ones (10ms)
+    private static void release(AimdLimiter limiter, int slow, int fast) {
+        for (int i = 0; i < slow; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(500), false);
+        }
+        for (int i = 0; i < fast; i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+        }
+    }
+
+    private static void acquireAll(AimdLimiter limiter, int count) {
+        for (int i = 0; i < count; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+        }
+    }
+
+    private static MockHttpServletRequest get() {
+        return new MockHttpServletRequest("GET", "/api/v1/beer");
+    }
+
+    private MockHttpServletResponse filter(MockHttpServletRequest request, FilterChain chain)
+            throws IOException, ServletException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+
+    //the request goes through to an empty chain, unless rejected
+    private MockHttpServletResponse filter(MockHttpServletRequest request) throws IOException, ServletException {
+        return filter(request, (req, res) -> { });
+    }
+}
@@ -0,0 +1,47 @@
+package com.bbj.spring6restmvc.config;
+
+import com.bbj.spring6restmvc.controller.BeerController;
+import com.bbj.spring6restmvc.controller.CustomerController;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//metrics export is off in tests unless asked for
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MetricsIT {
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Test
+    void testPrometheusScrape() {
+        assertThat(restTemplate.getForEntity(BeerController.BEER_PATH, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.getForEntity(CustomerController.CUSTOMER_PATH, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        String metrics = scrape.getBody();
+
+        //latency histogram per endpoint
+        assertThat(metrics).contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"" + BeerController.BEER_PATH + "\"");
+        //timer per service method
+        assertThat(metrics).contains("bbj_service_seconds_bucket{")
+                .contains("method=\"listBeers\"")
+                .contains("method=\"getAllCustomers\"");
+        //hibernate statistics and connection pool
+        assertThat(metrics).contains("hibernate_query_executions_total")
+                .contains("hibernate_entities_loads_total")
+                .contains("hibernate_flushes_total")
+                .contains("hikaricp_connections_active");
+    }
+}
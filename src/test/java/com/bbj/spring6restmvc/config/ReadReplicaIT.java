@@ -0,0 +1,81 @@
+package com.bbj.spring6restmvc.config;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.services.BeerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two local H2 databases, the replica a copy of the primary taken by hand (SCRIPT / RUNSCRIPT)
+ * once the bootstrap data is in: reads are served by the copy, writes after it only reach the primary.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica-it-primary;DB_CLOSE_DELAY=-1",
+        "bbj.datasource.replica-urls=" + ReadReplicaIT.REPLICA_URL,
+        "bbj.datasource.replica-lag=0s"})
+class ReadReplicaIT {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-it-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    BeerService beerService;
+
+    @Test
+    void testReadsComeFromTheReplica() throws Exception {
+        assertThat(dataSource).isInstanceOf(LazyConnectionDataSourceProxy.class);
+
+        replicate();
+        BeerDTO beer = beerService.listBeers(null, null, null, null, null, null).getContent().get(0);
+        String upc = beer.getUpc();
+
+        //written to the primary only, the replica is not told
+        beerService.updateBeerById(beer.getId(), beer.toBuilder().upc("replica-it").version(null).build());
+
+        BeerFilter byOldUpc = BeerFilter.builder().upc(upc).build();
+        assertThat(beerService.listBeers(byOldUpc, null, null, null, null, null).getContent())
+                .extracting(BeerDTO::getId).contains(beer.getId());
+        assertThat(new JdbcTemplate(dataSource).queryForObject("select upc from beer where id = ?",
+                String.class, beer.getId())).isEqualTo("replica-it");
+    }
+
+    @Test
+    void testCachedBeerIsReadFromThePrimary() throws Exception {
+        replicate();
+        BeerDTO beer = beerService.listBeers(null, null, null, null, null, null).getContent().get(0);
+
+        beerService.updateBeerById(beer.getId(), beer.toBuilder().upc("replica-it-cached").version(null).build());
+
+        //the replica still has the old row, the cache must not get it (for its whole ttl)
+        BeerDTO cached = beerService.getBeerById(beer.getId()).get();
+        assertThat(cached.getUpc()).isEqualTo("replica-it-cached");
+        assertThat(beerService.getBeerVersion(beer.getId())).contains(cached.getVersion());
+        assertThat(cached.getVersion()).isGreaterThan(beer.getVersion());
+    }
+
+    //stands in for the replication a real replica would get
+    private void replicate() throws Exception {
+        Path script = Files.createTempFile("replica-it", ".sql");
+        try {
+            new JdbcTemplate(dataSource).execute("script to '" + script + "'");
+            JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+            replica.execute("drop all objects");
+            replica.execute("runscript from '" + script + "'");
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.bbj.spring6restmvc.config;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.services.BeerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * As ReadReplicaIT, with the shipped replica-lag and the change sequencer running on its
+ * shipped interval: once the lag after a client's write is over, reads go to the replica again.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:replica-lag-it-primary;DB_CLOSE_DELAY=-1",
+        "bbj.datasource.replica-urls=" + ReadReplicaLagIT.REPLICA_URL,
+        "bbj.changes.sequencer.enabled=true"})
+class ReadReplicaLagIT {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica-lag-it-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    BeerService beerService;
+
+    @Test
+    void testReadsGoBackToTheReplicaAfterTheLag() throws Exception {
+        replicate();
+        BeerDTO beer = beerService.listBeers(null, null, null, null, null, null).getContent().get(0);
+        BeerFilter byOldUpc = BeerFilter.builder().upc(beer.getUpc()).build();
+
+        beerService.updateBeerById(beer.getId(), beer.toBuilder().upc("replica-lag-it").version(null).build());
+        //within replica-lag (1s): the primary, which has the write
+        assertThat(beerService.listBeers(byOldUpc, null, null, null, null, null).getContent())
+                .extracting(BeerDTO::getId).doesNotContain(beer.getId());
+
+        //a few sequencer passes (one per second), the write among what they number
+        Thread.sleep(3_500);
+        for (int i = 0; i < 5; i++) {
+            assertThat(beerService.listBeers(byOldUpc, null, null, null, null, null).getContent())
+                    .extracting(BeerDTO::getId).contains(beer.getId());
+            Thread.sleep(300);
+        }
+    }
+
+    //stands in for the replication a real replica would get
+    private void replicate() throws Exception {
+        Path script = Files.createTempFile("replica-lag-it", ".sql");
+        try {
+            new JdbcTemplate(dataSource).execute("script to '" + script + "'");
+            new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""))
+                    .execute("runscript from '" + script + "'");
+        } finally {
+            Files.deleteIfExists(script);
+        }
+    }
+}
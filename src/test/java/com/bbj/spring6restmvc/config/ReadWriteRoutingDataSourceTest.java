@@ -0,0 +1,102 @@
+package com.bbj.spring6restmvc.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//two (three) separate in-memory H2 databases, each knowing its own name
+class ReadWriteRoutingDataSourceTest {
+
+    DataSource primary = database("primary");
+    DataSource replica0 = database("replica0");
+    DataSource replica1 = database("replica1");
+
+    JdbcTemplate jdbcTemplate;
+    TransactionTemplate readWrite;
+    TransactionTemplate readOnly;
+
+    @AfterEach
+    void tearDown() {
+        for (DataSource dataSource : List.of(primary, replica0, replica1)) {
+            new JdbcTemplate(dataSource).execute("drop all objects");
+        }
+    }
+
+    @Test
+    void testReadOnlyTransactionsGoToReplicas() {
+        route(List.of(replica0, replica1), Duration.ZERO);
+
+        assertThat(whoAmI(readWrite)).isEqualTo("primary");
+        assertThat(whoAmI()).isEqualTo("primary"); //no transaction
+
+        Set<String> readers = new HashSet<>();
+        IntStream.range(0, 4).forEach(i -> readers.add(whoAmI(readOnly)));
+        assertThat(readers).containsExactlyInAnyOrder("replica0", "replica1");
+    }
+
+    @Test
+    void testReadsStayOnPrimaryWithinLagAfterWrite() {
+        route(List.of(replica0), Duration.ofHours(1));
+
+        //nothing written yet
+        assertThat(whoAmI(readOnly)).isEqualTo("replica0");
+
+        readWrite.executeWithoutResult(status -> jdbcTemplate.update("update who set name = name"));
+        assertThat(whoAmI(readOnly)).isEqualTo("primary");
+    }
+
+    @Test
+    void testUntrackedWritesDoNotKeepReadsOnPrimary() {
+        route(List.of(replica0), Duration.ofHours(1));
+
+        TransactionTemplate untracked = new TransactionTemplate(readWrite.getTransactionManager());
+        untracked.setName(ReadWriteRoutingDataSource.UNTRACKED_WRITE);
+        untracked.executeWithoutResult(status -> jdbcTemplate.update("update who set name = name"));
+        assertThat(whoAmI(readOnly)).isEqualTo("replica0");
+    }
+
+    @Test
+    void testNoReplicas() {
+        route(List.of(), Duration.ZERO);
+
+        assertThat(whoAmI(readOnly)).isEqualTo("primary");
+    }
+
+    private void route(List<DataSource> replicas, Duration lag) {
+        DataSource dataSource = new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replicas, lag));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    private String whoAmI(TransactionTemplate transaction) {
+        return transaction.execute(status -> whoAmI());
+    }
+
+    private String whoAmI() {
+        return jdbcTemplate.queryForObject("select name from who", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table who (name varchar(20))");
+        jdbcTemplate.update("insert into who values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,43 @@
+package com.bbj.spring6restmvc.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.Executor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThreadingConfigTest {
+
+    ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(ThreadingConfig.class);
+
+    @Test
+    void testPlatformMode() {
+        contextRunner.withPropertyValues(ThreadingConfig.THREAD_MODE_PROPERTY + "=platform")
+                .run(context -> assertThat(context).doesNotHaveBean(TomcatProtocolHandlerCustomizer.class));
+    }
+
+    @Test
+    void testVirtualModeFallsBackWithoutVirtualThreads() {
+        contextRunner.withPropertyValues(ThreadingConfig.THREAD_MODE_PROPERTY + "=virtual")
+                .run(context -> {
+                    if (VirtualThreads.isSupported()) {
+                        assertThat(context).hasSingleBean(TomcatProtocolHandlerCustomizer.class);
+                        //Boot's applicationTaskExecutor needs there to be none
+                        assertThat(context).doesNotHaveBean(Executor.class);
+                    } else {
+                        assertThat(context).doesNotHaveBean(TomcatProtocolHandlerCustomizer.class);
+                    }
+                });
+    }
+
+    @Test
+    void testVirtualThreadsSupportMatchesRuntime() {
+        int feature = Runtime.version().feature();
+        if (feature >= 21) assertThat(VirtualThreads.isSupported()).isTrue();
+        if (feature < 19) assertThat(VirtualThreads.isSupported()).isFalse();
+        assertThat(VirtualThreads.newPerTaskExecutor().isPresent()).isEqualTo(VirtualThreads.isSupported());
+    }
+}
@@ -1,19 +1,42 @@
 package com.bbj.spring6restmvc.controller;
 
 import com.bbj.spring6restmvc.mappers.BeerMapper;
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerCursor;
 import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerNameMatch;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerSortField;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
 import com.bbj.spring6restmvc.entities.Beer;
 import com.bbj.spring6restmvc.repositories.BeerRepository;
+import com.bbj.spring6restmvc.services.BeerDtoCache;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.transaction.Transactional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.annotation.Rollback;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -32,14 +55,39 @@ class BeerControllerIT {
     @Autowired
     BeerMapper beerMapper;
 
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    BeerDtoCache beerDtoCache;
+
     @Test
     void testUpdateNotFound() {
         assertThrows(NotFoundException.class, () -> {
             //update a non-existing uuid, set it to an empty object (using builder)
-            beerController.updateById(UUID.randomUUID(), BeerDTO.builder().build());
+            beerController.updateById(UUID.randomUUID(), null, BeerDTO.builder().build());
         });
     }
 
+    @Test
+    void testPatchAndDeleteNotFound() {
+        assertThrows(NotFoundException.class,
+                () -> beerController.patchBeerById(UUID.randomUUID(), null, BeerDTO.builder().price(BigDecimal.ONE).build()));
+        assertThrows(NotFoundException.class, () -> beerController.deleteById(UUID.randomUUID()));
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void deleteExistingBeer() {
+        Beer beer = beerRepository.findAll().get(0);
+
+        ResponseEntity<Object> responseEntity = beerController.deleteById(beer.getId());
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(204));
+        assertThat(beerRepository.findById(beer.getId())).isEmpty();
+        assertThrows(NotFoundException.class, () -> beerController.getBeerById(beer.getId(), null, null));
+    }
+
     @Test
     void updateExistingBeer() {
         Beer beer = beerRepository.findAll().get(0);
@@ -49,13 +97,55 @@ class BeerControllerIT {
         final String beerName = "UPDATED";
         beerDTO.setBeerName(beerName);
 
-        ResponseEntity<Object> responseEntity = beerController.updateById(beer.getId(), beerDTO);
+        ResponseEntity<Object> responseEntity = beerController.updateById(beer.getId(), null, beerDTO);
         assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(204));
 
         Beer updatedBeer = beerRepository.findById(beer.getId()).get(); //Optional.get()
         assertThat(updatedBeer.getBeerName()).isEqualTo(beerName);
     }
 
+    @Test
+    void updateWithIfMatch() {
+        Beer beer = beerRepository.findAll().get(0);
+        String eTag = beerController.getBeerById(beer.getId(), null, null).getHeaders().getETag();
+
+        BeerDTO beerDTO = beerMapper.beerToBeerDto(beer);
+        beerDTO.setVersion(null);
+        beerDTO.setBeerName("If-Match ok");
+
+        ResponseEntity<Object> responseEntity = beerController.updateById(beer.getId(), eTag, beerDTO);
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(204));
+        assertThat(responseEntity.getHeaders().getETag()).isEqualTo(ETags.of(beer.getId(), beer.getVersion() + 1));
+
+        //same ETag again: the row moved on, nothing is written
+        BeerDTO staleUpdate = beerMapper.beerToBeerDto(beer);
+        staleUpdate.setBeerName("If-Match stale");
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> beerController.updateById(beer.getId(), eTag, staleUpdate));
+
+        Beer updatedBeer = beerRepository.findById(beer.getId()).get();
+        assertThat(updatedBeer.getBeerName()).isEqualTo("If-Match ok");
+        assertThat(updatedBeer.getVersion()).isEqualTo(beer.getVersion() + 1);
+    }
+
+    @Test
+    void patchExistingBeer() {
+        Beer beer = beerRepository.findAll().get(1);
+
+        BeerDTO patch = BeerDTO.builder().price(new BigDecimal("1.23")).build();
+        ResponseEntity<Object> responseEntity = beerController.patchBeerById(beer.getId(), null, patch);
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(204));
+
+        Beer patchedBeer = beerRepository.findById(beer.getId()).get();
+        assertThat(patchedBeer.getPrice()).isEqualByComparingTo("1.23");
+        assertThat(patchedBeer.getBeerName()).isEqualTo(beer.getBeerName());
+        assertThat(patchedBeer.getVersion()).isEqualTo(beer.getVersion() + 1);
+
+        BeerDTO stalePatch = BeerDTO.builder().version(beer.getVersion()).price(BigDecimal.ONE).build();
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> beerController.patchBeerById(beer.getId(), null, stalePatch));
+    }
+
     //WARNING this test is modifying the database => ask Spring to make it transactional and rollback it at the end
     @Rollback
     @Transactional
@@ -81,27 +171,223 @@ class BeerControllerIT {
         assertThat(beer).isNotNull();
     }
 
+    @Test
+    void testExportBeers() throws Exception {
+        ResponseEntity<StreamingResponseBody> responseEntity = beerController.exportBeers();
+        assertThat(responseEntity.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        responseEntity.getBody().writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize((int) beerRepository.count());
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void saveNewBeersBatchTest() {
+        int count = 120;
+        List<BeerDTO> beers = IntStream.range(0, count)
+                .mapToObj(i -> BeerDTO.builder().beerName("Batch Beer " + i).build())
+                .toList();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        ResponseEntity<List<BatchItemResultDTO>> responseEntity = beerController.handleBatchPost(beers);
+
+        long statements = statistics.getPrepareStatementCount();
+        statistics.setStatisticsEnabled(false);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(201));
+        assertThat(responseEntity.getBody()).hasSize(count);
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(count);
+        //batch_size=50 => 120 inserts go out as 3 JDBC batches, not 120 statements
+        assertThat(statements).isEqualTo(3);
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void updateBeersBatchTest() {
+        List<BeerDTO> saved = beerController.handleBatchPost(IntStream.range(0, 3)
+                .mapToObj(i -> BeerDTO.builder().beerName("Bulk Beer " + i).price(BigDecimal.TEN).build())
+                .toList()).getBody().stream()
+                .map(result -> beerMapper.beerToBeerDto(beerRepository.findById(result.getId()).get()))
+                .toList();
+
+        List<BeerDTO> updates = List.of(
+                saved.get(0).toBuilder().price(BigDecimal.ONE).version(null).build(),
+                saved.get(1).toBuilder().price(BigDecimal.ONE).build(),
+                saved.get(2).toBuilder().price(BigDecimal.ONE).version(saved.get(2).getVersion() + 5).build(),
+                BeerDTO.builder().id(UUID.randomUUID()).beerName("Nowhere").build(),
+                BeerDTO.builder().beerName("No id").build());
+
+        ResponseEntity<List<BatchItemResultDTO>> responseEntity = beerController.handleBatchPut(updates);
+
+        assertThat(responseEntity.getStatusCode()).isEqualTo(HttpStatusCode.valueOf(200));
+        assertThat(responseEntity.getBody()).extracting(BatchItemResultDTO::getStatus)
+                .containsExactly(204, 204, 412, 404, 400);
+        assertThat(responseEntity.getBody().get(1).getVersion()).isEqualTo(saved.get(1).getVersion() + 1);
+        assertThat(beerRepository.findById(saved.get(0).getId()).get().getPrice()).isEqualByComparingTo("1");
+        assertThat(beerRepository.findById(saved.get(2).getId()).get().getPrice()).isEqualByComparingTo("10");
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void deleteBeersBatchTest() {
+        List<UUID> ids = beerController.handleBatchPost(IntStream.range(0, 3)
+                .mapToObj(i -> BeerDTO.builder().beerName("Bulk Beer " + i).build())
+                .toList()).getBody().stream()
+                .map(BatchItemResultDTO::getId)
+                .toList();
+        UUID unknown = UUID.randomUUID();
+
+        ResponseEntity<List<BatchItemResultDTO>> responseEntity =
+                beerController.handleBatchDelete(List.of(ids.get(0), unknown, ids.get(1), ids.get(2)));
+
+        assertThat(responseEntity.getBody()).extracting(BatchItemResultDTO::getStatus)
+                .containsExactly(204, 404, 204, 204);
+        assertThat(beerRepository.findAllById(ids)).isEmpty();
+    }
+
+    @Rollback
+    @Transactional
+    @Test
+    void adjustStockBatchTest() {
+        UUID id = beerController.handleBatchPost(List.of(BeerDTO.builder().beerName("Stock").quantityOnHand(10).build()))
+                .getBody().get(0).getId();
+
+        ResponseEntity<List<BatchItemResultDTO>> responseEntity = beerController.adjustStocks(List.of(
+                StockAdjustmentDTO.builder().beerId(id).delta(-4).build(),
+                StockAdjustmentDTO.builder().beerId(id).delta(-7).build(), //only 6 left
+                StockAdjustmentDTO.builder().beerId(UUID.randomUUID()).delta(-1).build(),
+                StockAdjustmentDTO.builder().beerId(id).build()));
+
+        assertThat(responseEntity.getBody()).extracting(BatchItemResultDTO::getStatus)
+                .containsExactly(204, 409, 404, 400);
+        assertThat(beerRepository.findById(id).get().getQuantityOnHand()).isEqualTo(6);
+    }
+
+    //no version in the requests: concurrent orders all go through, until the stock runs out
+    @Test
+    void adjustStockConcurrently() throws Exception {
+        int stock = 50;
+        int orders = 200;
+        UUID id = beerController.handleBatchPost(List.of(BeerDTO.builder().beerName("Hot").quantityOnHand(stock).build()))
+                .getBody().get(0).getId();
+        Integer version = beerRepository.findVersionById(id).get();
+        beerController.getBeerById(id, null, null); //cached, must not serve the old stock afterwards
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> statuses = IntStream.range(0, orders)
+                .mapToObj(i -> executor.submit(() -> beerController.adjustStock(id,
+                        StockAdjustmentDTO.builder().delta(-1).build()).getStatusCode().value()))
+                .toList();
+        List<Integer> results = new ArrayList<>();
+        for (Future<Integer> status : statuses) {
+            results.add(status.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        assertThat(results).filteredOn(status -> status == 204).hasSize(stock);
+        assertThat(results).filteredOn(status -> status == 409).hasSize(orders - stock);
+        BeerDTO beer = beerController.getBeerById(id, null, null).getBody();
+        assertThat(beer.getQuantityOnHand()).isZero();
+        assertThat(beer.getVersion()).isEqualTo(version + stock);
+
+        beerController.deleteById(id);
+    }
+
     @Test
     void testBeerIdNotFound() {
         assertThrows(NotFoundException.class, () -> {
-            beerController.getBeerById(UUID.randomUUID());
+            beerController.getBeerById(UUID.randomUUID(), null, null);
         });
     }
 
     @Test
     void testGetById() {
         Beer beer = beerRepository.findAll().get(0);
-        BeerDTO dto = beerController.getBeerById(beer.getId());
+        BeerDTO dto = beerController.getBeerById(beer.getId(), null, null).getBody();
         assertThat(dto).isNotNull();
         assertThat(dto.getId()).isEqualTo(beer.getId());
     }
 
+    @Test
+    void testGetByIdIsCachedUntilUpdated() {
+        Beer beer = beerRepository.findAll().get(0);
+        beerController.getBeerById(beer.getId(), null, null);
+
+        long hits = beerDtoCache.stats().hitCount();
+        beerController.getBeerById(beer.getId(), null, null);
+        assertThat(beerDtoCache.stats().hitCount()).isEqualTo(hits + 1);
+
+        BeerDTO update = beerMapper.beerToBeerDto(beer);
+        update.setBeerName("Cache Evicted");
+        beerController.updateById(beer.getId(), null, update);
+
+        assertThat(beerController.getBeerById(beer.getId(), null, null).getBody().getBeerName()).isEqualTo("Cache Evicted");
+    }
+
     @Test
     void testListBeers() {
-        List<BeerDTO> dtos = beerController.listBeers();
+        List<BeerDTO> dtos = beerController.listBeers(null, null, null, null, null, null, null, null, null, null).getBody().getContent();
         assertThat(dtos.size()).isEqualTo(3);
     }
 
+    @Test
+    void testListBeersFollowingCursor() {
+        BeerPageDTO firstPage = beerController.listBeers(null, null, null, null, null, null, 2, null, null, null).getBody();
+        assertThat(firstPage.getContent().size()).isEqualTo(2);
+        assertThat(firstPage.isHasNext()).isTrue();
+
+        BeerPageDTO secondPage = beerController.listBeers(null, null, null, null,
+                BeerCursor.valueOf(firstPage.getNextCursor()), null, 2, null, null, null).getBody();
+        assertThat(secondPage.getContent().size()).isEqualTo(1);
+        assertThat(secondPage.isHasNext()).isFalse();
+        assertThat(secondPage.getNextCursor()).isNull();
+        assertThat(secondPage.getContent()).doesNotContainAnyElementsOf(firstPage.getContent());
+    }
+
+    @Test
+    void testListBeersFarPastTheEnd() {
+        //3,000,000 x 1000 rows is past Integer.MAX_VALUE
+        BeerPageDTO page = beerController.listBeers(null, null, null, null, null, 3_000_000, 1000,
+                BeerSortField.PRICE, null, null).getBody();
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.isHasNext()).isFalse();
+    }
+
+    //other tests rename/update the bootstrap beers, so this one brings its own
+    @Rollback
+    @Transactional
+    @Test
+    void testListBeersFiltered() {
+        beerRepository.save(Beer.builder().beerName("Zythum Gold").beerStyle(BeerStyle.GOSE).upc("zz-1").build());
+        beerRepository.save(Beer.builder().beerName("Zythum Dark").beerStyle(BeerStyle.GOSE).upc("zz-2").build());
+        beerRepository.save(Beer.builder().beerName("Old Zythum").beerStyle(BeerStyle.PORTER).upc("zz-1").build());
+
+        assertThat(beerController.listBeers(null, null, BeerStyle.GOSE, null, null, null, null, null, null, null)
+                .getBody().getContent()).hasSize(2);
+        assertThat(beerController.listBeers(null, null, BeerStyle.GOSE, "zz-1", null, null, null, null, null, null)
+                .getBody().getContent()).extracting(BeerDTO::getBeerName).containsExactly("Zythum Gold");
+        assertThat(beerController.listBeers("Zythum", null, null, null, null, null, null, null, null, null)
+                .getBody().getContent()).extracting(BeerDTO::getBeerName)
+                .containsExactlyInAnyOrder("Zythum Gold", "Zythum Dark");
+        assertThat(beerController.listBeers("Zythum", BeerNameMatch.CONTAINS, null, null, null, null, null, null, null, null)
+                .getBody().getContent()).hasSize(3);
+        //filter and keyset paging combine
+        BeerPageDTO firstPage = beerController.listBeers("Zythum", BeerNameMatch.CONTAINS, null, null,
+                null, null, 2, null, null, null).getBody();
+        assertThat(firstPage.isHasNext()).isTrue();
+        assertThat(beerController.listBeers("Zythum", BeerNameMatch.CONTAINS, null, null,
+                BeerCursor.valueOf(firstPage.getNextCursor()), null, 2, null, null, null).getBody().getContent()).hasSize(1);
+    }
+
     /*
         In fact this test is run first, so testListBeers() will fail
         As this test is deleting data, we tell Spring to run it in a transaction
@@ -112,7 +398,7 @@ class BeerControllerIT {
     @Test
     void testEmptyList() {
         beerRepository.deleteAll();
-        List<BeerDTO> dtos = beerController.listBeers();
+        List<BeerDTO> dtos = beerController.listBeers(null, null, null, null, null, null, null, null, null, null).getBody().getContent();
         assertThat(dtos.size()).isEqualTo(0);
     }
 }
\ No newline at end of file
@@ -1,6 +1,13 @@
 package com.bbj.spring6restmvc.controller;
 
+import com.bbj.spring6restmvc.config.CborConfig;
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerCursor;
 import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerNameMatch;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
 import com.bbj.spring6restmvc.services.BeerService;
 import com.bbj.spring6restmvc.services.BeerServiceImpl;
 
@@ -12,23 +19,35 @@ import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(BeerController.class)
+@Import(CborConfig.class)
 class BeerControllerTest {
 
     //Setup MockMvc by bringing a MockMvc component, injected by Spring.
@@ -38,6 +57,9 @@ class BeerControllerTest {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    MappingJackson2CborHttpMessageConverter cborConverter;
+
     //tells Mockito to bring a mock of BeerService into the spring context
     //by default will return a null response
     @MockBean
@@ -63,6 +85,7 @@ class BeerControllerTest {
 
         Map<String, Object> beerMap = new HashMap<>();
         beerMap.put("beerName", "New Name");
+        given(beerService.patchBeerById(any(), any())).willReturn(true);
 
         mockMvc.perform(patch(BeerController.BEER_PATH_ID, beer.getId())
                         .contentType(MediaType.APPLICATION_JSON)
@@ -79,6 +102,7 @@ class BeerControllerTest {
     @Test
     void testDeleteBeer() throws Exception {
         BeerDTO beer = beerServiceImpl.listBeers().get(0);
+        given(beerService.deleteById(any())).willReturn(true);
 
         mockMvc.perform(delete(BeerController.BEER_PATH_ID, beer.getId())
                         .accept(MediaType.APPLICATION_JSON))
@@ -89,6 +113,19 @@ class BeerControllerTest {
         assertThat(beer.getId()).isEqualTo(uuidArgumentCaptor.getValue());
     }
 
+    @Test
+    void testPatchAndDeleteBeerNotFound() throws Exception {
+        given(beerService.patchBeerById(any(), any())).willReturn(false);
+        given(beerService.deleteById(any())).willReturn(false);
+
+        mockMvc.perform(patch(BeerController.BEER_PATH_ID, UUID.randomUUID())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"beerName\": \"New Name\"}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete(BeerController.BEER_PATH_ID, UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void testUpdateBeer() throws Exception {
         BeerDTO beer = beerServiceImpl.listBeers().get(0);
@@ -104,6 +141,68 @@ class BeerControllerTest {
         verify(beerService).updateBeerById(any(UUID.class), any(BeerDTO.class));
     }
 
+    @Test
+    void testUpdateBeerIfMatch() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers().get(0);
+        beer.setVersion(null);
+
+        given(beerService.updateBeerById(any(), any())).willReturn(Optional.of(beer.toBuilder().version(8).build()));
+
+        mockMvc.perform(put(BeerController.BEER_PATH_ID, beer.getId())
+                        .header(HttpHeaders.IF_MATCH, ETags.of(beer.getId(), 7))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(beer)))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.of(beer.getId(), 8)));
+
+        verify(beerService).updateBeerById(any(UUID.class), beerArgumentCaptor.capture());
+        assertThat(beerArgumentCaptor.getValue().getVersion()).isEqualTo(7);
+    }
+
+    @Test
+    void testUpdateBeerIfMatchCborTag() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers().get(0);
+        beer.setVersion(null);
+
+        given(beerService.updateBeerById(any(), any())).willReturn(Optional.of(beer.toBuilder().version(8).build()));
+
+        //the tag of a CBOR GET is the same version
+        mockMvc.perform(put(BeerController.BEER_PATH_ID, beer.getId())
+                        .header(HttpHeaders.IF_MATCH, ETags.of(beer.getId(), 7, MediaType.APPLICATION_CBOR))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(beer)))
+                .andExpect(status().isNoContent());
+
+        verify(beerService).updateBeerById(any(UUID.class), beerArgumentCaptor.capture());
+        assertThat(beerArgumentCaptor.getValue().getVersion()).isEqualTo(7);
+    }
+
+    @Test
+    void testUpdateBeerVersionMismatch() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers().get(0);
+
+        given(beerService.updateBeerById(any(), any()))
+                .willThrow(new ObjectOptimisticLockingFailureException(BeerDTO.class, beer.getId()));
+
+        mockMvc.perform(put(BeerController.BEER_PATH_ID, beer.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(beer)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testPatchBeerForeignIfMatch() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers().get(0);
+
+        mockMvc.perform(patch(BeerController.BEER_PATH_ID, beer.getId())
+                        .header(HttpHeaders.IF_MATCH, ETags.of(UUID.randomUUID(), 1))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"beerName\": \"New Name\"}"))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(beerService, never()).patchBeerById(any(), any());
+    }
+
     @Test
     void testCreateNewBeer() throws Exception {
         BeerDTO beer = beerServiceImpl.listBeers().get(0);
@@ -120,15 +219,218 @@ class BeerControllerTest {
                 .andExpect(header().exists("Location"));
     }
 
+    @Test
+    void testCreateNewBeerCbor() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers().get(0);
+        beer.setVersion(null);
+        beer.setId(null);
+
+        given(beerService.saveNewBeer(any(BeerDTO.class))).willReturn(beerServiceImpl.listBeers().get(1));
+
+        mockMvc.perform(post(BeerController.BEER_PATH)
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .content(cborConverter.getObjectMapper().writeValueAsBytes(beer)))
+                .andExpect(status().isCreated());
+
+        verify(beerService).saveNewBeer(beerArgumentCaptor.capture());
+        assertThat(beerArgumentCaptor.getValue()).isEqualTo(beer);
+    }
+
+    @Test
+    void testCreateBeersBatch() throws Exception {
+        List<BeerDTO> saved = beerServiceImpl.listBeers();
+
+        given(beerService.saveNewBeers(any())).willReturn(saved);
+
+        mockMvc.perform(post(BeerController.BEER_PATH_BATCH)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(saved)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()", is(3)))
+                .andExpect(jsonPath("$[0].id", is(saved.get(0).getId().toString())))
+                .andExpect(jsonPath("$[0].location", is(BeerController.BEER_PATH + "/" + saved.get(0).getId())));
+    }
+
+    @Test
+    void testUpdateAndDeleteBeersBatch() throws Exception {
+        List<BeerDTO> beers = beerServiceImpl.listBeers();
+        UUID id = beers.get(0).getId();
+        List<BatchItemResultDTO> results = List.of(BatchItemResultDTO.builder().id(id).status(204).build());
+        given(beerService.updateBeers(any())).willReturn(results);
+        given(beerService.deleteBeers(any())).willReturn(results);
+
+        mockMvc.perform(put(BeerController.BEER_PATH_BATCH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(beers)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id", is(id.toString())))
+                .andExpect(jsonPath("$[0].status", is(204)));
+
+        mockMvc.perform(delete(BeerController.BEER_PATH_BATCH)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(id))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status", is(204)));
+
+        verify(beerService).deleteBeers(List.of(id));
+    }
+
+    @Test
+    void testAdjustStock() throws Exception {
+        UUID id = beerServiceImpl.listBeers().get(0).getId();
+        given(beerService.adjustStock(List.of(StockAdjustmentDTO.builder().beerId(id).delta(-2).build())))
+                .willReturn(List.of(BatchItemResultDTO.builder().id(id).status(204).build()));
+        given(beerService.adjustStock(List.of(StockAdjustmentDTO.builder().beerId(id).delta(-1000).build())))
+                .willReturn(List.of(BatchItemResultDTO.builder().id(id).status(409).build()));
+
+        mockMvc.perform(post(BeerController.BEER_PATH_ID_STOCK, id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -2}"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(post(BeerController.BEER_PATH_ID_STOCK, id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"delta\": -1000}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testAdjustStockBatch() throws Exception {
+        List<StockAdjustmentDTO> adjustments = beerServiceImpl.listBeers().stream()
+                .map(beer -> StockAdjustmentDTO.builder().beerId(beer.getId()).delta(-1).build())
+                .toList();
+        given(beerService.adjustStock(adjustments)).willReturn(adjustments.stream()
+                .map(adjustment -> BatchItemResultDTO.builder().id(adjustment.getBeerId()).status(204).build())
+                .toList());
+
+        mockMvc.perform(post(BeerController.BEER_PATH_STOCK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(adjustments)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", is(3)))
+                .andExpect(jsonPath("$[2].status", is(204)));
+    }
+
     @Test
     void testListBeers() throws Exception {
-        given(beerService.listBeers()).willReturn(beerServiceImpl.listBeers());
+        given(beerService.listBeers(any(), any(), any(), any(), any(), any()))
+                .willReturn(beerServiceImpl.listBeers(null, null, null, null, null, null));
 
         mockMvc.perform(get(BeerController.BEER_PATH)
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.length()", is(3)));
+                .andExpect(jsonPath("$.content.length()", is(3)))
+                .andExpect(jsonPath("$.hasNext", is(false)))
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void testGetChanges() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers().get(0);
+        beerServiceImpl.patchBeerById(beer.getId(), BeerDTO.builder().price(new BigDecimal("1.99")).build());
+        beerServiceImpl.deleteById(beerServiceImpl.listBeers().get(1).getId());
+        given(beerService.getChanges(3L, 10)).willReturn(beerServiceImpl.getChanges(3L, 10));
+
+        mockMvc.perform(get(BeerController.BEER_PATH_CHANGES)
+                        .queryParam("since", "3")
+                        .queryParam("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed.length()", is(1)))
+                .andExpect(jsonPath("$.changed[0].id", is(beer.getId().toString())))
+                .andExpect(jsonPath("$.deleted.length()", is(1)))
+                .andExpect(jsonPath("$.cursor", is(5)))
+                .andExpect(jsonPath("$.hasMore", is(false)));
+    }
+
+    @Test
+    void testListBeersNotModified() throws Exception {
+        given(beerService.listBeers(any(), any(), any(), any(), any(), any()))
+                .willReturn(beerServiceImpl.listBeers(null, null, null, null, null, null));
+
+        String eTag = mockMvc.perform(get(BeerController.BEER_PATH))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testListBeersWithCursor() throws Exception {
+        BeerDTO beer = beerServiceImpl.listBeers().get(0);
+        BeerCursor cursor = BeerCursor.of(beer);
+
+        given(beerService.listBeers(any(), any(), any(), any(), any(), any()))
+                .willReturn(beerServiceImpl.listBeers(null, cursor, null, 2, null, null));
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("cursor", cursor.encode())
+                        .queryParam("pageSize", "2")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(beerService).listBeers(any(), eq(cursor), any(), eq(2), any(), any());
+    }
+
+    @Test
+    void testListBeersFiltered() throws Exception {
+        given(beerService.listBeers(any(), any(), any(), any(), any(), any()))
+                .willReturn(beerServiceImpl.listBeers(null, null, null, null, null, null));
+
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("beerName", "Gal")
+                        .queryParam("nameMatch", "CONTAINS")
+                        .queryParam("beerStyle", "PALE_ALE")
+                        .queryParam("upc", "12356")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        verify(beerService).listBeers(eq(BeerFilter.builder()
+                .beerName("Gal")
+                .nameMatch(BeerNameMatch.CONTAINS)
+                .beerStyle(BeerStyle.PALE_ALE)
+                .upc("12356")
+                .build()), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testListBeersBadStyle() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("beerStyle", "NOT_A_STYLE")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testListBeersBadCursor() throws Exception {
+        mockMvc.perform(get(BeerController.BEER_PATH)
+                        .queryParam("cursor", "not-a-cursor")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testExportBeers() throws Exception {
+        willAnswer(invocation -> {
+            Consumer<BeerDTO> consumer = invocation.getArgument(0);
+            beerServiceImpl.listBeers().forEach(consumer);
+            return null;
+        }).given(beerService).exportBeers(any());
+
+        MvcResult asyncResult = mockMvc.perform(get(BeerController.BEER_PATH_EXPORT))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(objectMapper.readValue(lines[0], BeerDTO.class).getId()).isNotNull();
     }
 
     @Test
@@ -158,6 +460,74 @@ class BeerControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id", is(testBeer.getId().toString())))
-                .andExpect(jsonPath("$.beerName", is(testBeer.getBeerName())));
+                .andExpect(jsonPath("$.beerName", is(testBeer.getBeerName())))
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.of(testBeer.getId(), testBeer.getVersion())));
+    }
+
+    @Test
+    void getBeerByIdCbor() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+
+        given(beerService.getBeerById(testBeer.getId())).willReturn(Optional.of(testBeer));
+
+        byte[] body = mockMvc.perform(get(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG,
+                        ETags.of(testBeer.getId(), testBeer.getVersion(), MediaType.APPLICATION_CBOR)))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        //every field comes back as it was, in fewer bytes than the JSON
+        assertThat(cborConverter.getObjectMapper().readValue(body, BeerDTO.class)).isEqualTo(testBeer);
+        assertThat(body.length).isLessThan(objectMapper.writeValueAsBytes(testBeer).length);
+    }
+
+    @Test
+    void getBeerByIdNotModified() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+        String eTag = ETags.of(testBeer.getId(), testBeer.getVersion());
+
+        given(beerService.getBeerVersion(testBeer.getId())).willReturn(Optional.of(testBeer.getVersion()));
+
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+
+        //answered from the version alone
+        verify(beerService, never()).getBeerById(any());
+    }
+
+    @Test
+    void getBeerByIdCborIsNotTheJsonOne() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+
+        given(beerService.getBeerVersion(testBeer.getId())).willReturn(Optional.of(testBeer.getVersion()));
+        given(beerService.getBeerById(testBeer.getId())).willReturn(Optional.of(testBeer));
+
+        //a cache holding the JSON body must not have it revalidated for a CBOR client
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, ETags.of(testBeer.getId(), testBeer.getVersion()))
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR));
+    }
+
+    @Test
+    void getBeerByIdStaleETag() throws Exception {
+        BeerDTO testBeer = beerServiceImpl.listBeers().get(0);
+
+        given(beerService.getBeerVersion(testBeer.getId())).willReturn(Optional.of(testBeer.getVersion()));
+        given(beerService.getBeerById(testBeer.getId())).willReturn(Optional.of(testBeer));
+
+        mockMvc.perform(get(BeerController.BEER_PATH_ID, testBeer.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, ETags.of(testBeer.getId(), testBeer.getVersion() - 1))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(testBeer.getId().toString())));
     }
 }
\ No newline at end of file
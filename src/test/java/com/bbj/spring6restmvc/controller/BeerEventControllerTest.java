@@ -0,0 +1,203 @@
+package com.bbj.spring6restmvc.controller;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.services.BeerService;
+import com.bbj.spring6restmvc.services.BeerServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+//the in memory BeerService feeds the broadcaster, polled by the tests only
+@WebMvcTest(value = BeerEventController.class, properties = {"bbj.sse.poll-interval=1h", "bbj.sse.buffer-size=3"})
+@Import({BeerChangeBroadcaster.class, BeerServiceImpl.class})
+class BeerEventControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    //the real in memory one, watched by testNoSubscriberNoRead, held by testCatchUpDoesNotHoldThePoll
+    @SpyBean
+    BeerService beerService;
+
+    @Autowired
+    BeerChangeBroadcaster broadcaster;
+
+    List<MvcResult> streams = new CopyOnWriteArrayList<>();
+
+    //the client goes away: the broadcaster is shared by the tests, its subscribers are not
+    @AfterEach
+    void tearDown() {
+        streams.forEach(stream -> stream.getRequest().getAsyncContext().complete());
+    }
+
+    @Test
+    void testChangesArePushed() throws Exception {
+        UUID updated = newBeer("updated");
+        UUID deleted = newBeer("deleted");
+        broadcaster.poll();
+
+        MvcResult result = subscribe(null);
+        assertThat(awaitContent(result, "\n\n")).isEqualTo(BeerChangeBroadcaster.HEARTBEAT);
+        assertThat(result.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+
+        UUID created = newBeer("created");
+        beerService.patchBeerById(updated, BeerDTO.builder().price(new BigDecimal("3.50")).build());
+        beerService.patchBeerById(updated, BeerDTO.builder().price(new BigDecimal("4.50")).build());
+        beerService.deleteById(deleted);
+        broadcaster.poll();
+
+        String events = awaitContent(result, "id:" + beerService.getLatestChangeCursor() + "\n\n");
+        assertThat(events).contains("event:created\ndata:{\"id\":\"" + created + "\"");
+        assertThat(events).contains("event:deleted\ndata:{\"id\":\"" + deleted + "\"}\n\n");
+        //both updates in one poll: the latest only
+        assertThat(events).containsOnlyOnce("event:updated\ndata:{\"id\":\"" + updated + "\"");
+        assertThat(events).contains("\"price\":4.50").doesNotContain("\"price\":3.50");
+    }
+
+    @Test
+    void testResumeFromLastEventId() throws Exception {
+        broadcaster.poll();
+        long lastEventId = beerService.getLatestChangeCursor();
+        UUID missed = newBeer("missed");
+        broadcaster.poll();
+
+        MvcResult result = subscribe(lastEventId);
+
+        String events = awaitContent(result, "id:" + beerService.getLatestChangeCursor() + "\n\n");
+        assertThat(events).startsWith("event:created\ndata:{\"id\":\"" + missed + "\"");
+    }
+
+    @Test
+    void testCatchUpDoesNotHoldThePoll() throws Exception {
+        MvcResult watcher = subscribe(null);
+        assertThat(awaitContent(watcher, "\n\n")).isEqualTo(BeerChangeBroadcaster.HEARTBEAT);
+        long lastEventId = beerService.getLatestChangeCursor();
+        UUID missed = newBeer("missed");
+        broadcaster.poll();
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(beerService).getChanges(eq(lastEventId), anyInt());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MvcResult> result = executor.submit(() -> subscribe(lastEventId));
+            assertThat(reading.await(5, TimeUnit.SECONDS)).isTrue();
+
+            //polls go on while the resume reads, and go past what it is reading up to
+            UUID later = newBeer("later");
+            CompletableFuture.runAsync(broadcaster::poll).get(5, TimeUnit.SECONDS);
+            release.countDown();
+
+            String events = awaitContent(result.get(5, TimeUnit.SECONDS), "id:" + beerService.getLatestChangeCursor() + "\n\n");
+            assertThat(events).contains("event:created\ndata:{\"id\":\"" + missed + "\"")
+                    .contains("event:created\ndata:{\"id\":\"" + later + "\"");
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testResyncWhenTooFarBehind() throws Exception {
+        broadcaster.poll();
+        long lastEventId = beerService.getLatestChangeCursor();
+        for (int i = 0; i < 4; i++) {
+            newBeer("missed " + i);
+        }
+        broadcaster.poll();
+
+        MvcResult result = subscribe(lastEventId);
+
+        //more than a buffer holds: the client reads GET /changes, the stream ends
+        assertThat(awaitContent(result, "\n\n")).isEqualTo("event:resync\ndata:" + lastEventId + "\n\n");
+        assertThat(broadcaster.getSubscriberCount()).isZero();
+    }
+
+    @Test
+    void testResyncWhenAheadOfTheFeed() throws Exception {
+        //as after the db was reset
+        MvcResult result = subscribe(beerService.getLatestChangeCursor() + 100);
+
+        assertThat(awaitContent(result, "\n\n")).isEqualTo("event:resync\ndata:0\n\n");
+        assertThat(broadcaster.getSubscriberCount()).isZero();
+    }
+
+    @Test
+    void testNoSubscriberNoRead() throws Exception {
+        broadcaster.poll();
+        broadcaster.poll();
+        verify(beerService, never()).getChanges(any(), anyInt());
+
+        //the first subscriber starts from the latest cursor, read when it comes
+        newBeer("before");
+        MvcResult result = subscribe(null);
+        assertThat(awaitContent(result, "\n\n")).isEqualTo(BeerChangeBroadcaster.HEARTBEAT);
+        UUID after = newBeer("after");
+        broadcaster.poll();
+
+        String events = awaitContent(result, "id:" + beerService.getLatestChangeCursor() + "\n\n");
+        assertThat(events).doesNotContain("\"before\"").contains("event:created\ndata:{\"id\":\"" + after + "\"");
+    }
+
+    private MvcResult subscribe(Long lastEventId) throws Exception {
+        MvcResult result = mockMvc.perform(lastEventId == null ? get(BeerEventController.BEER_PATH_EVENTS)
+                        : get(BeerEventController.BEER_PATH_EVENTS).header("Last-Event-ID", lastEventId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streams.add(result);
+        return result;
+    }
+
+    //written by a sender thread
+    private String awaitContent(MvcResult result, String suffix) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String content = result.getResponse().getContentAsString();
+        while (!content.endsWith(suffix) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            content = result.getResponse().getContentAsString();
+        }
+        assertThat(content).endsWith(suffix);
+        return content;
+    }
+
+    private UUID newBeer(String name) {
+        return beerService.saveNewBeer(BeerDTO.builder()
+                .beerName(name)
+                .upc("123")
+                .price(BigDecimal.TEN)
+                .quantityOnHand(1)
+                .build()).getId();
+    }
+}
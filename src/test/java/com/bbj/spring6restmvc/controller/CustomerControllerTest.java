@@ -1,6 +1,7 @@
 package com.bbj.spring6restmvc.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.bbj.spring6restmvc.config.CborConfig;
 import com.bbj.spring6restmvc.model.CustomerDTO;
 import com.bbj.spring6restmvc.services.CustomerService;
 import com.bbj.spring6restmvc.services.CustomerServiceImpl;
@@ -11,7 +12,10 @@ import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.HashMap;
@@ -23,11 +27,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(CustomerController.class)
+@Import(CborConfig.class)
 class CustomerControllerTest {
 
     @MockBean
@@ -39,6 +45,9 @@ class CustomerControllerTest {
     @Autowired
     ObjectMapper objectMapper;
 
+    @Autowired
+    MappingJackson2CborHttpMessageConverter cborConverter;
+
     CustomerServiceImpl customerServiceImpl;
 
     @BeforeEach
@@ -72,6 +81,17 @@ class CustomerControllerTest {
                 .isEqualTo(customerMap.get("name"));
     }
 
+    @Test
+    void testGetChanges() throws Exception {
+        given(customerService.getChanges(null, null)).willReturn(customerServiceImpl.getChanges(null, null));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_PATH_CHANGES))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed.length()", is(3)))
+                .andExpect(jsonPath("$.deleted.length()", is(0)))
+                .andExpect(jsonPath("$.cursor", is(3)));
+    }
+
     @Test
     void testDeleteCustomer() throws Exception {
         CustomerDTO customer = customerServiceImpl.getAllCustomers().get(0);
@@ -124,7 +144,8 @@ class CustomerControllerTest {
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.length()", is(3)));
+                .andExpect(jsonPath("$.length()", is(3)))
+                .andExpect(header().exists(HttpHeaders.ETAG));
     }
 
     @Test
@@ -146,6 +167,39 @@ class CustomerControllerTest {
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$.name", is(customer.getName())));
+                .andExpect(jsonPath("$.name", is(customer.getName())))
+                .andExpect(header().string(HttpHeaders.ETAG, ETags.of(customer.getId(), customer.getVersion())));
+    }
+
+    @Test
+    void getCustomerByIdCbor() throws Exception {
+        CustomerDTO customer = customerServiceImpl.getAllCustomers().get(0);
+
+        given(customerService.getCustomerById(customer.getId())).willReturn(Optional.of(customer));
+
+        byte[] body = mockMvc.perform(get(CustomerController.CUSTOMER_PATH_ID, customer.getId())
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG,
+                        ETags.of(customer.getId(), customer.getVersion(), MediaType.APPLICATION_CBOR)))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(cborConverter.getObjectMapper().readValue(body, CustomerDTO.class)).isEqualTo(customer);
+    }
+
+    @Test
+    void getCustomerByIdNotModified() throws Exception {
+        CustomerDTO customer = customerServiceImpl.getAllCustomers().get(0);
+        String eTag = ETags.of(customer.getId(), customer.getVersion());
+
+        given(customerService.getCustomerVersion(customer.getId())).willReturn(Optional.of(customer.getVersion()));
+
+        mockMvc.perform(get(CustomerController.CUSTOMER_PATH_ID, customer.getId())
+                        .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        verify(customerService, never()).getCustomerById(any());
     }
 }
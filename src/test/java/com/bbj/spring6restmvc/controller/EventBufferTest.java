@@ -0,0 +1,50 @@
+package com.bbj.spring6restmvc.controller;
+
+import com.bbj.spring6restmvc.controller.EventBuffer.Event;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventBufferTest {
+
+    UUID a = UUID.randomUUID();
+    UUID b = UUID.randomUUID();
+    UUID c = UUID.randomUUID();
+
+    @Test
+    void testLatestEventOfABeerIsKeptInFeedOrder() {
+        EventBuffer buffer = new EventBuffer(10, 0);
+
+        assertThat(buffer.offer(List.of(new Event(a, "a1;"), new Event(b, "b1;")), 2)).isTrue();
+        assertThat(buffer.offer(List.of(new Event(a, "a2;")), 3)).isTrue();
+
+        assertThat(buffer.take()).isEqualTo("b1;a2;id:3\n\n");
+        assertThat(buffer.take()).isNull();
+        assertThat(buffer.isEmpty()).isTrue();
+    }
+
+    @Test
+    void testPagesAlreadyCoveredAreIgnored() {
+        EventBuffer buffer = new EventBuffer(10, 5);
+
+        buffer.offer(List.of(new Event(a, "a1;")), 5);
+        assertThat(buffer.isEmpty()).isTrue();
+
+        buffer.offer(List.of(new Event(b, "b1;")), 6);
+        assertThat(buffer.getCursor()).isEqualTo(6);
+        assertThat(buffer.take()).isEqualTo("b1;id:6\n\n");
+    }
+
+    @Test
+    void testOverCapacity() {
+        EventBuffer buffer = new EventBuffer(2, 0);
+
+        assertThat(buffer.offer(List.of(new Event(a, "a1;"), new Event(b, "b1;")), 2)).isTrue();
+        //the same beers again still fit
+        assertThat(buffer.offer(List.of(new Event(a, "a2;"), new Event(b, "b2;")), 4)).isTrue();
+        assertThat(buffer.offer(List.of(new Event(c, "c1;")), 5)).isFalse();
+    }
+}
@@ -0,0 +1,68 @@
+package com.bbj.spring6restmvc.entities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TimeOrderedUuidGeneratorTest {
+
+    @Test
+    void testVersionAndVariant() {
+        UUID uuid = TimeOrderedUuidGenerator.next();
+        assertThat(uuid.version()).isEqualTo(7);
+        assertThat(uuid.variant()).isEqualTo(2);
+        //leading 48 bits are the unix millis
+        assertThat(uuid.getMostSignificantBits() >>> 16)
+                .isCloseTo(System.currentTimeMillis(), within(1_000L));
+    }
+
+    @Test
+    void testStrictlyIncreasingWithinAMillisecond() {
+        UUID previous = TimeOrderedUuidGenerator.next();
+        for (int i = 0; i < 100_000; i++) {
+            UUID next = TimeOrderedUuidGenerator.next();
+            assertThat(next).isGreaterThan(previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void testUniqueAndOrderedPerThreadUnderContention() throws Exception {
+        int threads = 16;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        Callable<List<UUID>> generate = () -> {
+            List<UUID> ids = new ArrayList<>(perThread);
+            for (int i = 0; i < perThread; i++) {
+                ids.add(TimeOrderedUuidGenerator.next());
+            }
+            return ids;
+        };
+        List<Future<List<UUID>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(generate));
+        }
+
+        Set<UUID> all = new HashSet<>();
+        for (Future<List<UUID>> future : futures) {
+            List<UUID> ids = future.get();
+            assertThat(ids).isSorted();
+            all.addAll(ids);
+        }
+        executor.shutdown();
+
+        assertThat(all).hasSize(threads * perThread);
+    }
+}
@@ -1,9 +1,21 @@
 package com.bbj.spring6restmvc.repositories;
 
 import com.bbj.spring6restmvc.entities.Beer;
+import com.bbj.spring6restmvc.model.BeerCursor;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerFilter;
+import com.bbj.spring6restmvc.model.BeerNameMatch;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -13,6 +25,9 @@ class BeerRepositoryTest {
     @Autowired
     BeerRepository beerRepository;
 
+    @Autowired
+    EntityManager entityManager;
+
     @Test
     void testSaveBeer() {
         /**
@@ -27,4 +42,78 @@ class BeerRepositoryTest {
         assertThat(savedBeer).isNotNull();
         assertThat(savedBeer.getId()).isNotNull();
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindSliceByKeyset() {
+        for (int i = 0; i < 5; i++) {
+            beerRepository.save(Beer.builder().beerName("Beer " + i).build());
+        }
+        Sort keysetOrder = Sort.by("updateDate", "id");
+
+        Slice<Beer> first = beerRepository.findSlice(null, PageRequest.of(0, 3, keysetOrder));
+        assertThat(first.getContent()).hasSize(3);
+        assertThat(first.hasNext()).isTrue();
+
+        Beer last = first.getContent().get(2);
+        BeerCursor cursor = new BeerCursor(last.getUpdateDate(), last.getId());
+        Slice<Beer> second = beerRepository.findSlice(
+                BeerSpecifications.after(cursor, Sort.Direction.ASC), PageRequest.of(0, 3, keysetOrder));
+        assertThat(second.getContent()).hasSize(2);
+        assertThat(second.hasNext()).isFalse();
+        assertThat(second.getContent()).doesNotContainAnyElementsOf(first.getContent());
+    }
+
+    @Test
+    void testFindSliceFiltered() {
+        beerRepository.save(Beer.builder().beerName("Galaxy Cat").beerStyle(BeerStyle.PALE_ALE).upc("1").build());
+        beerRepository.save(Beer.builder().beerName("Crank").beerStyle(BeerStyle.PALE_ALE).upc("2").build());
+        beerRepository.save(Beer.builder().beerName("100%_Hops").beerStyle(BeerStyle.IPA).upc("3").build());
+        PageRequest pageRequest = PageRequest.of(0, 10, Sort.by("updateDate", "id"));
+
+        assertThat(beerRepository.findSlice(BeerSpecifications.matching(BeerFilter.builder()
+                .beerStyle(BeerStyle.PALE_ALE).build()), pageRequest).getContent()).hasSize(2);
+        assertThat(beerRepository.findSlice(BeerSpecifications.matching(BeerFilter.builder()
+                .beerName("Cr").build()), pageRequest).getContent())
+                .extracting(Beer::getBeerName).containsExactly("Crank");
+        assertThat(beerRepository.findSlice(BeerSpecifications.matching(BeerFilter.builder()
+                .beerName("ank").nameMatch(BeerNameMatch.CONTAINS).build()), pageRequest).getContent())
+                .extracting(Beer::getBeerName).containsExactly("Crank");
+        //wildcards typed by the client are matched literally
+        assertThat(beerRepository.findSlice(BeerSpecifications.matching(BeerFilter.builder()
+                .beerName("%_").nameMatch(BeerNameMatch.CONTAINS).build()), pageRequest).getContent())
+                .extracting(Beer::getBeerName).containsExactly("100%_Hops");
+    }
+
+    @Test
+    void testDtoProjectionsLoadNoEntities() {
+        Beer saved = beerRepository.saveAndFlush(Beer.builder().beerName("Galaxy Cat").beerStyle(BeerStyle.PALE_ALE)
+                .upc("123").quantityOnHand(12).price(new BigDecimal("11.99")).build());
+        entityManager.clear();
+
+        BeerDTO dto = beerRepository.findBeerDtoById(saved.getId()).orElseThrow();
+        assertThat(dto.getBeerName()).isEqualTo("Galaxy Cat");
+        assertThat(dto.getBeerStyle()).isEqualTo(BeerStyle.PALE_ALE);
+        assertThat(dto.getVersion()).isEqualTo(saved.getVersion());
+        assertThat(dto.getPrice()).isEqualByComparingTo("11.99");
+        assertThat(dto.getCreatedDate()).isNotNull();
+
+        Slice<BeerDTO> slice = beerRepository.findDtoSlice(BeerSpecifications.matching(BeerFilter.builder()
+                .beerStyle(BeerStyle.PALE_ALE).build()), PageRequest.of(0, 10, Sort.by("updateDate", "id")));
+        assertThat(slice.getContent()).extracting(BeerDTO::getId).containsExactly(saved.getId());
+
+        //nothing became managed
+        assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    void testFilterQueriesUseIndexes() {
+        assertThat(plan("select * from beer where beer_name like 'Gal%'")).contains("IX_BEER_NAME");
+        assertThat(plan("select * from beer where upc = '12356'")).contains("IX_BEER_UPC");
+        assertThat(plan("select * from beer where beer_style = 1 order by update_date, id"))
+                .contains("IX_BEER_STYLE_UPDATE_DATE_ID");
+    }
+
+    private String plan(String sql) {
+        return entityManager.createNativeQuery("explain " + sql).getSingleResult().toString().toUpperCase();
+    }
+}
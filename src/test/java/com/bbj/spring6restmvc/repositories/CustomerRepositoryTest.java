@@ -1,6 +1,9 @@
 package com.bbj.spring6restmvc.repositories;
 
 import com.bbj.spring6restmvc.entities.Customer;
+import com.bbj.spring6restmvc.model.CustomerDTO;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -13,6 +16,9 @@ class CustomerRepositoryTest {
     @Autowired
     CustomerRepository customerRepository;
 
+    @Autowired
+    EntityManager entityManager;
+
     @Test
     void testSaveCustomer() {
         Customer savedCustomer = customerRepository.save(Customer.builder()
@@ -22,4 +28,17 @@ class CustomerRepositoryTest {
         assertThat(savedCustomer.getId()).isNotNull();
     }
 
+    @Test
+    void testDtoProjectionsLoadNoEntities() {
+        Customer savedCustomer = customerRepository.saveAndFlush(Customer.builder().name("Projected").build());
+        entityManager.clear();
+
+        CustomerDTO dto = customerRepository.findCustomerDtoById(savedCustomer.getId()).orElseThrow();
+        assertThat(dto.getName()).isEqualTo("Projected");
+        assertThat(dto.getVersion()).isEqualTo(savedCustomer.getVersion());
+        assertThat(customerRepository.findAllCustomerDtos()).extracting(CustomerDTO::getId)
+                .contains(savedCustomer.getId());
+
+        assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.model.BeerCursor;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.BeerPageDTO;
+import com.bbj.spring6restmvc.model.BeerStyle;
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerServiceImplTest {
+
+    BeerServiceImpl beerService;
+
+    @BeforeEach
+    void setUp() {
+        beerService = new BeerServiceImpl();
+    }
+
+    @Test
+    void testReturnedBeersAreCopies() {
+        BeerDTO beer = beerService.listBeers().get(0);
+        beer.setBeerName("changed outside of the service");
+
+        assertThat(beerService.getBeerById(beer.getId()).get().getBeerName())
+                .isNotEqualTo("changed outside of the service");
+    }
+
+    @Test
+    void testStyleIndexFollowsUpdates() {
+        BeerDTO beer = beerService.listBeersByStyle(BeerStyle.IPA).get(0);
+
+        beerService.patchBeerById(beer.getId(), BeerDTO.builder().beerStyle(BeerStyle.STOUT).build());
+
+        assertThat(beerService.listBeersByStyle(BeerStyle.IPA)).isEmpty();
+        assertThat(beerService.listBeersByStyle(BeerStyle.STOUT))
+                .extracting(BeerDTO::getId).containsExactly(beer.getId());
+    }
+
+    @Test
+    void testUpcIndexAfterDelete() {
+        assertThat(beerService.listBeersByUpc("12356")).hasSize(2);
+
+        BeerDTO beer = beerService.listBeersByUpc("12356").get(0);
+        assertThat(beerService.deleteById(beer.getId())).isTrue();
+        assertThat(beerService.deleteById(beer.getId())).isFalse();
+
+        assertThat(beerService.listBeersByUpc("12356")).hasSize(1);
+    }
+
+    @Test
+    void testUpcChurnLeavesNoEmptyIndexEntries() {
+        BeerDTO beer = beerService.listBeersByUpc("12356222").get(0);
+
+        for (int i = 0; i < 100; i++) {
+            beerService.patchBeerById(beer.getId(), BeerDTO.builder().upc("upc-" + i).build());
+        }
+
+        //"12356" (2 beers) and the last one only
+        assertThat(beerService.indexedUpcCount()).isEqualTo(2);
+        assertThat(beerService.listBeersByUpc("upc-99")).extracting(BeerDTO::getId).containsExactly(beer.getId());
+    }
+
+    @Test
+    void testKeysetPagesFollowUpdates() {
+        BeerDTO first = beerService.listBeers(null, null, null, 2, null, null).getContent().get(0);
+        beerService.patchBeerById(first.getId(), BeerDTO.builder().beerName("moved to the end").build());
+
+        BeerPageDTO page = beerService.listBeers(null, null, null, 2, null, null);
+        BeerPageDTO next = beerService.listBeers(null, BeerCursor.valueOf(page.getNextCursor()), null, 2, null, null);
+
+        assertThat(page.getContent()).hasSize(2).extracting(BeerDTO::getId).doesNotContain(first.getId());
+        assertThat(next.getContent()).extracting(BeerDTO::getBeerName).containsExactly("moved to the end");
+        assertThat(next.isHasNext()).isFalse();
+    }
+
+    @Test
+    void testChangesFollowTheWrites() {
+        ChangesDTO<BeerDTO> initial = beerService.getChanges(null, null);
+        assertThat(initial.getChanged()).hasSize(3);
+
+        BeerDTO patched = beerService.listBeers().get(0);
+        BeerDTO deleted = beerService.listBeers().get(1);
+        beerService.patchBeerById(patched.getId(), BeerDTO.builder().beerName("patched").build());
+        beerService.deleteById(deleted.getId());
+
+        ChangesDTO<BeerDTO> changes = beerService.getChanges(initial.getCursor(), null);
+        assertThat(changes.getChanged()).extracting(BeerDTO::getBeerName).containsExactly("patched");
+        assertThat(changes.getDeleted()).containsExactly(deleted.getId());
+
+        //a beer changed again moves to the end of the feed, from the start only 2 are left
+        assertThat(beerService.getChanges(0L, 1).isHasMore()).isTrue();
+        assertThat(beerService.getChanges(0L, null).getChanged()).hasSize(2);
+    }
+
+    @Test
+    void testFeedReadDuringConcurrentWritesSkipsNothing() throws Exception {
+        int writes = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        IntStream.range(0, writes).forEach(i -> executor.execute(() ->
+                beerService.saveNewBeer(BeerDTO.builder().beerName("beer " + i).price(BigDecimal.ONE).build())));
+        executor.shutdown();
+
+        //a client following the feed while the seqs are appended out of order
+        Set<UUID> seen = new HashSet<>();
+        long cursor = 0;
+        boolean writing = true;
+        while (writing || cursor < beerService.getLatestChangeCursor()) {
+            writing = !executor.isTerminated();
+            ChangesDTO<BeerDTO> page = beerService.getChanges(cursor, 1000);
+            page.getChanged().forEach(beer -> assertThat(seen.add(beer.getId())).isTrue());
+            cursor = page.getCursor();
+        }
+
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        assertThat(seen).hasSize(writes + 3);
+    }
+
+    @Test
+    void testConcurrentPatchesAreNotLost() throws Exception {
+        BeerDTO beer = beerService.listBeers().get(0);
+        int writes = 2_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        IntStream.range(0, writes).forEach(i -> executor.execute(() ->
+                beerService.patchBeerById(beer.getId(), BeerDTO.builder()
+                        .beerStyle(i % 2 == 0 ? BeerStyle.LAGER : BeerStyle.PORTER)
+                        .quantityOnHand(i)
+                        .build())));
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        BeerDTO result = beerService.getBeerById(beer.getId()).get();
+        //every patch produced exactly one new version
+        assertThat(result.getVersion()).isEqualTo(beer.getVersion() + writes);
+        //and the beer is indexed under its final style only
+        assertThat(beerService.listBeersByStyle(result.getBeerStyle()))
+                .extracting(BeerDTO::getId).contains(beer.getId());
+        BeerStyle other = result.getBeerStyle() == BeerStyle.LAGER ? BeerStyle.PORTER : BeerStyle.LAGER;
+        assertThat(beerService.listBeersByStyle(other)).isEmpty();
+    }
+}
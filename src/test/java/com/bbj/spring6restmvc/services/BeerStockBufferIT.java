@@ -0,0 +1,199 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.model.BatchItemResultDTO;
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.StockAdjustmentDTO;
+import com.bbj.spring6restmvc.repositories.BeerRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+//flushed by the tests only
+@SpringBootTest(properties = {
+        "beer.stock.write-behind.enabled=true",
+        "beer.stock.write-behind.flush-interval=1h",
+        "beer.stock.write-behind.max-pending=1000000"})
+class BeerStockBufferIT {
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerStockBuffer stockBuffer;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void testDeltasAreReadBeforeTheyAreWritten() {
+        UUID id = newBeer(10);
+        Integer version = beerRepository.findVersionById(id).get();
+
+        assertThat(adjust(id, -3, -2, -6)).containsExactly(204, 204, 409);
+        assertThat(adjust(UUID.randomUUID(), -1)).containsExactly(404);
+
+        //nothing written yet, but reads see it
+        assertThat(beerRepository.findQuantityOnHandById(id)).contains(10);
+        assertThat(beerService.getBeerById(id).get().getQuantityOnHand()).isEqualTo(5);
+
+        assertThat(stockBuffer.flush()).isEqualTo(1);
+        assertThat(beerRepository.findQuantityOnHandById(id)).contains(5);
+        //one UPDATE for both deltas
+        assertThat(beerRepository.findVersionById(id)).contains(version + 1);
+        assertThat(beerService.getBeerById(id).get().getQuantityOnHand()).isEqualTo(5);
+    }
+
+    @Test
+    void testConcurrentDeltasAreNotLost() throws Exception {
+        int stock = 2_000;
+        int orders = 3_000;
+        UUID id = newBeer(stock);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<Integer>>> statuses = IntStream.range(0, orders)
+                .mapToObj(i -> executor.submit(() -> adjust(id, -1)))
+                .toList();
+        List<Integer> results = new ArrayList<>();
+        for (Future<List<Integer>> status : statuses) {
+            results.addAll(status.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        stockBuffer.flush();
+
+        assertThat(results).filteredOn(status -> status == 204).hasSize(stock);
+        assertThat(beerRepository.findQuantityOnHandById(id)).contains(0);
+    }
+
+    @Test
+    void testConcurrentDeltasDuringOtherWrites() throws Exception {
+        int stock = 500;
+        int orders = 800;
+        UUID id = newBeer(stock);
+
+        //each PATCH has the stock read again while orders are taking it
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<Integer>>> statuses = IntStream.range(0, orders)
+                .mapToObj(i -> executor.submit(() -> {
+                    if (i % 50 == 0) {
+                        beerService.patchBeerById(id, BeerDTO.builder().beerName("Write-behind " + i).build());
+                    }
+                    return adjust(id, -1);
+                }))
+                .toList();
+        List<Integer> results = new ArrayList<>();
+        for (Future<List<Integer>> status : statuses) {
+            results.addAll(status.get(30, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        stockBuffer.flush();
+
+        assertThat(results).filteredOn(status -> status == 204).hasSize(stock);
+        assertThat(beerRepository.findQuantityOnHandById(id)).contains(0);
+    }
+
+    @Test
+    void testOtherWritesAreReadAgain() {
+        UUID id = newBeer(10);
+        assertThat(adjust(id, -3)).containsExactly(204);
+
+        BeerDTO beer = beerService.getBeerById(id).get();
+        beerService.updateBeerById(id, beer.toBuilder().quantityOnHand(100).version(null).build());
+
+        //the pending -3 lands on top of the 100 written by the PUT
+        assertThat(adjust(id, -98, -97)).containsExactly(409, 204);
+        stockBuffer.flush();
+        assertThat(beerRepository.findQuantityOnHandById(id)).contains(0);
+    }
+
+    @Test
+    void testPutDuringAFlush() throws Exception {
+        //the flush updates in id order: a lock on the first beer holds it before the UPDATE of the second
+        List<UUID> ids = List.of(newBeer(10), newBeer(10)).stream().sorted().toList();
+        UUID first = ids.get(0);
+        UUID id = ids.get(1);
+        assertThat(adjust(first, -1)).containsExactly(204);
+        assertThat(adjust(id, -3)).containsExactly(204);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<?> lock = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.update("update beer set version = version where id = ?", first);
+                locked.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(locked.await(30, TimeUnit.SECONDS)).isTrue();
+
+            Future<Integer> flush = executor.submit(stockBuffer::flush);
+            //the -3 is out of pending, not in the db yet
+            while (beerService.getBeerById(id).get().getQuantityOnHand() != 10) {
+                assertThat(flush).isNotDone();
+                Thread.sleep(10);
+            }
+
+            BeerDTO beer = beerService.getBeerById(id).get();
+            beerService.updateBeerById(id, beer.toBuilder().quantityOnHand(100).version(null).build());
+
+            //the stock is read again once the flush has committed, not before
+            Future<List<Integer>> order = executor.submit(() -> adjust(id, -100));
+            assertThatThrownBy(() -> order.get(300, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+            release.countDown();
+            lock.get(30, TimeUnit.SECONDS);
+            assertThat(flush.get(30, TimeUnit.SECONDS)).isEqualTo(2);
+            assertThat(order.get(30, TimeUnit.SECONDS)).containsExactly(409);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        assertThat(beerRepository.findQuantityOnHandById(id)).contains(97);
+        assertThat(adjust(id, -97)).containsExactly(204);
+        stockBuffer.flush();
+        assertThat(beerRepository.findQuantityOnHandById(id)).contains(0);
+    }
+
+    private List<Integer> adjust(UUID id, int... deltas) {
+        return beerService.adjustStock(IntStream.of(deltas)
+                        .mapToObj(delta -> StockAdjustmentDTO.builder().beerId(id).delta(delta).build())
+                        .toList())
+                .stream().map(BatchItemResultDTO::getStatus).toList();
+    }
+
+    private UUID newBeer(int stock) {
+        return beerService.saveNewBeer(BeerDTO.builder()
+                .beerName("Write-behind")
+                .quantityOnHand(stock)
+                .price(BigDecimal.TEN)
+                .build()).getId();
+    }
+}
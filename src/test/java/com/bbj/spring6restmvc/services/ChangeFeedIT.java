@@ -0,0 +1,111 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.model.BeerDTO;
+import com.bbj.spring6restmvc.model.ChangesDTO;
+import com.bbj.spring6restmvc.model.CustomerDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//sequenced by the tests only
+@SpringBootTest(properties = "bbj.changes.sequencer.enabled=false")
+class ChangeFeedIT {
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    CustomerService customerService;
+
+    @Autowired
+    ChangeSequencer changeSequencer;
+
+    @Test
+    void testOnlyBeersChangedSinceTheCursorComeBack() {
+        UUID updated = newBeer("updated");
+        UUID deleted = newBeer("deleted");
+        long cursor = latestBeerCursor();
+
+        UUID created = newBeer("created");
+        beerService.patchBeerById(updated, BeerDTO.builder().price(new BigDecimal("3.50")).build());
+        beerService.deleteById(deleted);
+
+        //not numbered yet: not in the feed
+        assertThat(beerService.getChanges(cursor, 100).getChanged()).isEmpty();
+
+        changeSequencer.sequence();
+        ChangesDTO<BeerDTO> changes = beerService.getChanges(cursor, 100);
+
+        //numbered in the same pass: no order between them
+        assertThat(changes.getChanged()).extracting(BeerDTO::getId).containsExactlyInAnyOrder(created, updated);
+        assertThat(changes.getChanged()).filteredOn(beer -> beer.getId().equals(updated))
+                .extracting(BeerDTO::getPrice).containsExactly(new BigDecimal("3.50"));
+        assertThat(changes.getDeleted()).containsExactly(deleted);
+        assertThat(changes.getCursor()).isGreaterThan(cursor);
+        assertThat(changes.isHasMore()).isFalse();
+
+        //nothing new after the returned cursor
+        ChangesDTO<BeerDTO> next = beerService.getChanges(changes.getCursor(), 100);
+        assertThat(next.getChanged()).isEmpty();
+        assertThat(next.getDeleted()).isEmpty();
+        assertThat(next.getCursor()).isEqualTo(changes.getCursor());
+    }
+
+    @Test
+    void testChangesArePagedByLimit() {
+        long cursor = latestBeerCursor();
+        List<UUID> created = List.of(newBeer("a"), newBeer("b"), newBeer("c"));
+        changeSequencer.sequence();
+
+        ChangesDTO<BeerDTO> first = beerService.getChanges(cursor, 2);
+        ChangesDTO<BeerDTO> second = beerService.getChanges(first.getCursor(), 2);
+
+        assertThat(first.isHasMore()).isTrue();
+        assertThat(second.isHasMore()).isFalse();
+        assertThat(first.getChanged()).hasSize(2);
+        assertThat(second.getChanged()).hasSize(1);
+        assertThat(Stream.concat(first.getChanged().stream(), second.getChanged().stream()).map(BeerDTO::getId))
+                .containsExactlyInAnyOrderElementsOf(created);
+    }
+
+    @Test
+    void testCustomerChanges() {
+        changeSequencer.sequence();
+        long cursor = customerService.getChanges(null, 1000).getCursor();
+
+        UUID created = customerService.saveNewCustomer(CustomerDTO.builder().name("new").build()).getId();
+        UUID deleted = customerService.saveNewCustomer(CustomerDTO.builder().name("gone").build()).getId();
+        customerService.deleteCustomerById(deleted);
+        changeSequencer.sequence();
+
+        ChangesDTO<CustomerDTO> changes = customerService.getChanges(cursor, 100);
+        assertThat(changes.getChanged()).extracting(CustomerDTO::getId).containsExactly(created);
+        assertThat(changes.getDeleted()).containsExactly(deleted);
+    }
+
+    //numbers whatever is pending, then follows the feed to its end
+    private long latestBeerCursor() {
+        changeSequencer.sequence();
+        ChangesDTO<BeerDTO> changes = beerService.getChanges(null, 1000);
+        while (changes.isHasMore()) {
+            changes = beerService.getChanges(changes.getCursor(), 1000);
+        }
+        return changes.getCursor();
+    }
+
+    private UUID newBeer(String name) {
+        return beerService.saveNewBeer(BeerDTO.builder()
+                .beerName(name)
+                .upc("123")
+                .price(BigDecimal.TEN)
+                .quantityOnHand(1)
+                .build()).getId();
+    }
+}
@@ -0,0 +1,43 @@
+package com.bbj.spring6restmvc.services;
+
+import com.bbj.spring6restmvc.model.CustomerDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerServiceImplTest {
+
+    CustomerServiceImpl customerService;
+
+    @BeforeEach
+    void setUp() {
+        customerService = new CustomerServiceImpl();
+    }
+
+    @Test
+    void testEveryWriteMovesTheVersion() {
+        CustomerDTO customer = customerService.getAllCustomers().get(0);
+
+        customerService.patchCustomerById(customer.getId(), CustomerDTO.builder().name("patched").build());
+        assertThat(customerService.getCustomerVersion(customer.getId())).contains(customer.getVersion() + 1);
+
+        customerService.updateCustomerById(customer.getId(), CustomerDTO.builder().name("updated").build());
+        assertThat(customerService.getCustomerVersion(customer.getId())).contains(customer.getVersion() + 2);
+
+        //nothing to change: same version
+        customerService.patchCustomerById(customer.getId(), CustomerDTO.builder().build());
+        assertThat(customerService.getCustomerVersion(customer.getId())).contains(customer.getVersion() + 2);
+    }
+
+    @Test
+    void testCustomersReadBeforeAWriteStayAsTheyWere() {
+        CustomerDTO customer = customerService.getAllCustomers().get(0);
+        String name = customer.getName();
+
+        customerService.updateCustomerById(customer.getId(), CustomerDTO.builder().name("updated").build());
+
+        assertThat(customer.getName()).isEqualTo(name);
+        assertThat(customerService.getCustomerById(customer.getId()).get().getName()).isEqualTo("updated");
+    }
+}